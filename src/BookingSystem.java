@@ -4,17 +4,18 @@ public class BookingSystem {
 
   TreeMap<Integer, Integer> bookings = new TreeMap<>();
 
-  private boolean canBook(int start, int end) {
+  boolean canBook(int start, int end) {
     var lowest = bookings.floorEntry(start);
 //    var highest = bookings.lowerEntry(end);
 
     var highest = bookings.ceilingEntry(start);
 
+    // the next booking conflicts when it starts before the new one ends
     return !(lowest != null && lowest.getValue() > start ||
-        highest != null && highest.getValue() < end);
+        highest != null && highest.getKey() < end);
   }
 
-  private void addBooking(int start, int end) {
+  void addBooking(int start, int end) {
     // all the non overlap bookings
     bookings.put(start, end);
   }
@@ -0,0 +1,190 @@
+import java.util.*;
+
+/**
+ * Booking system for resources that allow up to capacity simultaneous bookings (a room with several
+ * desks, a link with bandwidth slots). Bookings are half-open [start, end) like in BookingSystem.
+ * <p>
+ * The number of active bookings at every time point is kept in a dynamic segment tree over the whole
+ * int range with lazy range-add tags: a booking adds 1 to [start, end) and a cancellation adds -1.
+ * Nodes are only created along the boundaries of the updated ranges, and tags are never pushed down;
+ * each node stores the max of its subtree including its own tag, so:
+ * <p>
+ * maxConcurrent(start, end): O(log R), R being the size of the time range (32 levels for int time)
+ * book(start, end): O(log R), check and add happen under one lock
+ * cancel(start, end): O(log R)
+ */
+public class CapacityBookingSystem {
+
+  private static final long MIN_TIME = Integer.MIN_VALUE;
+  private static final long MAX_TIME = (long) Integer.MAX_VALUE + 1;
+
+  private final int capacity;
+
+  // Node pool; index 0 is the empty child whose max is always 0
+  private int[] left = new int[1024];
+  private int[] right = new int[1024];
+  private int[] max = new int[1024];
+  private int[] tag = new int[1024];
+  private int nodes = 2; // node 1 is the root
+
+  // How many bookings exist per exact [start, end), so only real bookings can be cancelled
+  private final Map<Long, Integer> booked = new HashMap<>();
+
+  public CapacityBookingSystem(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+  }
+
+  // Maximum number of bookings active at the same time within [start, end)
+  public synchronized int maxConcurrent(int start, int end) {
+    checkRange(start, end);
+    return query(1, MIN_TIME, MAX_TIME, start, end);
+  }
+
+  public synchronized boolean canBook(int start, int end) {
+    return maxConcurrent(start, end) < capacity;
+  }
+
+  // Books [start, end) if no time point in it is already at capacity
+  public synchronized boolean book(int start, int end) {
+    if (!canBook(start, end)) {
+      return false;
+    }
+    add(1, MIN_TIME, MAX_TIME, start, end, 1);
+    booked.merge(key(start, end), 1, Integer::sum);
+    return true;
+  }
+
+  // Cancels one booking of exactly [start, end)
+  public synchronized boolean cancel(int start, int end) {
+    checkRange(start, end);
+    Integer count = booked.get(key(start, end));
+    if (count == null) {
+      return false;
+    }
+    if (count == 1) {
+      booked.remove(key(start, end));
+    } else {
+      booked.put(key(start, end), count - 1);
+    }
+    add(1, MIN_TIME, MAX_TIME, start, end, -1);
+    return true;
+  }
+
+  private void add(int node, long lo, long hi, int start, int end, int delta) {
+    if (start <= lo && hi <= end) {
+      tag[node] += delta;
+      max[node] += delta;
+      return;
+    }
+    long mid = (lo + hi) >> 1;
+    if (start < mid) {
+      if (left[node] == 0) {
+        left[node] = newNode();
+      }
+      add(left[node], lo, mid, start, end, delta);
+    }
+    if (end > mid) {
+      if (right[node] == 0) {
+        right[node] = newNode();
+      }
+      add(right[node], mid, hi, start, end, delta);
+    }
+    max[node] = tag[node] + Math.max(max[left[node]], max[right[node]]);
+  }
+
+  private int query(int node, long lo, long hi, int start, int end) {
+    if (node == 0) {
+      return 0;
+    }
+    if (start <= lo && hi <= end) {
+      return max[node];
+    }
+    long mid = (lo + hi) >> 1;
+    int best = Integer.MIN_VALUE;
+    if (start < mid) {
+      best = query(left[node], lo, mid, start, end);
+    }
+    if (end > mid) {
+      best = Math.max(best, query(right[node], mid, hi, start, end));
+    }
+    return tag[node] + best;
+  }
+
+  private int newNode() {
+    if (nodes == max.length) {
+      int size = nodes << 1;
+      left = Arrays.copyOf(left, size);
+      right = Arrays.copyOf(right, size);
+      max = Arrays.copyOf(max, size);
+      tag = Arrays.copyOf(tag, size);
+    }
+    return nodes++;
+  }
+
+  private static long key(int start, int end) {
+    return ((long) start << 32) | (end & 0xFFFFFFFFL);
+  }
+
+  private static void checkRange(int start, int end) {
+    if (start >= end) {
+      throw new IllegalArgumentException("start must be before end");
+    }
+  }
+
+  public static void main(String[] args) {
+    CapacityBookingSystem room = new CapacityBookingSystem(2);
+
+    System.out.println(room.book(10, 20)); // true
+    System.out.println(room.book(15, 25)); // true, two desks used in [15, 20)
+    System.out.println(room.book(18, 22)); // false, [18, 20) is full
+    System.out.println(room.book(20, 30)); // true, [20, 25) has one free desk
+    System.out.println("Max concurrent in [0, 40): " + room.maxConcurrent(0, 40)); // 2
+    System.out.println(room.cancel(15, 25)); // true
+    System.out.println(room.book(18, 22)); // true
+
+    // Differential check against a brute-force count per time point
+    Random random = new Random(42);
+    int operations = 200_000;
+    int domain = 300;
+    CapacityBookingSystem system = new CapacityBookingSystem(3);
+    int[] active = new int[domain];
+    List<int[]> bookings = new ArrayList<>();
+    for (int i = 0; i < operations; i++) {
+      int start = random.nextInt(domain - 1);
+      int end = start + 1 + random.nextInt(Math.min(40, domain - start - 1));
+      int expectedMax = 0;
+      for (int t = start; t < end; t++) {
+        expectedMax = Math.max(expectedMax, active[t]);
+      }
+      int choice = random.nextInt(3);
+      if (choice == 0 && !bookings.isEmpty()) {
+        int[] booking = bookings.remove(random.nextInt(bookings.size()));
+        if (!system.cancel(booking[0], booking[1])) {
+          throw new AssertionError("cancel failed for " + Arrays.toString(booking));
+        }
+        for (int t = booking[0]; t < booking[1]; t++) {
+          active[t]--;
+        }
+      } else if (choice == 1) {
+        if (system.maxConcurrent(start, end) != expectedMax) {
+          throw new AssertionError("max mismatch for [" + start + ", " + end + ")");
+        }
+      } else {
+        boolean expected = expectedMax < 3;
+        if (system.book(start, end) != expected) {
+          throw new AssertionError("book mismatch for [" + start + ", " + end + ")");
+        }
+        if (expected) {
+          bookings.add(new int[]{start, end});
+          for (int t = start; t < end; t++) {
+            active[t]++;
+          }
+        }
+      }
+    }
+    System.out.println("Differential check against brute force: " + operations + " operations OK");
+  }
+}
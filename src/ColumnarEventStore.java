@@ -0,0 +1,319 @@
+import java.util.*;
+
+/**
+ * Columnar storage mode for events: starts and ends live in two parallel int[] columns sorted by start,
+ * instead of one Event object (12 byte header + 2 ints + padding) per event plus a reference slot and
+ * a tree node. The sorted columns are cut into blocks of BLOCK events, and a max tree over the blocks'
+ * largest ends finds the next block that still has an event running after low, so a query skips blocks
+ * that ended before its window instead of walking every event since the earliest long one.
+ * <p>
+ * addEvent: O(1) amortized, appended to an unsorted tail that is sorted and merged on the next query.
+ * removeEvent: O(log N) to find the event and O(N) to close the gap in the columns.
+ * Overlap query: O(log N + B (BLOCK + log N)), B <= min(K + 1, N / BLOCK) being the blocks holding the K
+ * results, each walked as a tight loop over two int columns. The first query after T appends also merges
+ * them: O(T log T + M), M being the events that start after the earliest appended one. The merge runs in
+ * place from the back, so its only extra memory is the T sorted tail entries.
+ * Nothing is allocated per event unless the caller asks for Event objects.
+ */
+public class ColumnarEventStore {
+
+  // Allocation-free callback receiving one overlapping event at a time
+  interface EventVisitor {
+    void visit(int start, int end);
+  }
+
+  private static final int BLOCK_SHIFT = 6;
+  private static final int BLOCK = 1 << BLOCK_SHIFT;
+
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  // Max tree over the largest end of every block of the sorted columns: leaves at [leaves, 2 * leaves)
+  private int[] blockMaxEnds = {Integer.MIN_VALUE, Integer.MIN_VALUE};
+  private int leaves = 1;
+  private int blocks; // leaves in use
+  private int size;
+  private int sorted; // [0, sorted) is ordered by start, [sorted, size) is the unsorted tail
+
+  int size() {
+    return size;
+  }
+
+  void addEvent(int start, int end) {
+    if (size == starts.length) {
+      int capacity = size + (size >> 1);
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+  boolean removeEvent(int start, int end) {
+    ensureSorted();
+    for (int i = lowerBound(start); i < size && starts[i] == start; i++) {
+      if (ends[i] == end) {
+        System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+        System.arraycopy(ends, i + 1, ends, i, size - i - 1);
+        size--;
+        sorted = size;
+        rebuildBlockMaxEnds(i >>> BLOCK_SHIFT);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Same overlap rule as EventScheduler: start < high && end > low
+  void forEachOverlappingEvent(int low, int high, EventVisitor visitor) {
+    ensureSorted();
+    int to = lowerBound(high);
+    for (int block = nextRunningBlock(0, low, to); block >= 0; block = nextRunningBlock(block + 1, low, to)) {
+      int blockEnd = Math.min((block + 1) << BLOCK_SHIFT, to);
+      for (int i = block << BLOCK_SHIFT; i < blockEnd; i++) {
+        if (ends[i] > low) {
+          visitor.visit(starts[i], ends[i]);
+        }
+      }
+    }
+  }
+
+  int countOverlappingEvents(int low, int high) {
+    ensureSorted();
+    int to = lowerBound(high);
+    int count = 0;
+    for (int block = nextRunningBlock(0, low, to); block >= 0; block = nextRunningBlock(block + 1, low, to)) {
+      int blockEnd = Math.min((block + 1) << BLOCK_SHIFT, to);
+      for (int i = block << BLOCK_SHIFT; i < blockEnd; i++) {
+        if (ends[i] > low) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  // Materializes Event objects only for the events that overlap
+  List<EventScheduler.Event> findOverlappingEvents(int low, int high) {
+    List<EventScheduler.Event> overlappingEvents = new ArrayList<>();
+    forEachOverlappingEvent(low, high, (start, end) -> overlappingEvents.add(new EventScheduler.Event(start, end)));
+    return overlappingEvents;
+  }
+
+  // Sorts the appended tail and merges it in place into the sorted columns: O(T log T + M + log N), M being
+  // the sorted events that start after the first appended one and so move
+  private void ensureSorted() {
+    if (sorted == size) {
+      return;
+    }
+    int tail = size - sorted;
+    long[] packed = new long[tail];
+    for (int i = 0; i < tail; i++) {
+      packed[i] = ((long) starts[sorted + i] << 32) | (ends[sorted + i] & 0xFFFFFFFFL);
+    }
+    Arrays.sort(packed);
+
+    // prefix entries up to the first tail start keep their position, so their blocks' max ends still hold
+    int firstTailStart = (int) (packed[0] >> 32);
+    int unchanged = 0;
+    int hi = sorted;
+    while (unchanged < hi) {
+      int mid = (unchanged + hi) >>> 1;
+      if (starts[mid] <= firstTailStart) {
+        unchanged = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    // merge from the back into the slots the tail vacated; on equal starts the prefix entry stays first
+    int i = sorted - 1;
+    int j = tail - 1;
+    for (int k = size - 1; j >= 0; k--) {
+      int tailStart = (int) (packed[j] >> 32);
+      if (i >= unchanged && starts[i] > tailStart) {
+        starts[k] = starts[i];
+        ends[k] = ends[i--];
+      } else {
+        starts[k] = tailStart;
+        ends[k] = (int) packed[j--];
+      }
+    }
+    sorted = size;
+    rebuildBlockMaxEnds(unchanged >>> BLOCK_SHIFT);
+  }
+
+  // Recomputes the max end of every block from fromBlock on, then the inner nodes above them:
+  // O(N - fromBlock * BLOCK + log N)
+  private void rebuildBlockMaxEnds(int fromBlock) {
+    int previous = blocks;
+    blocks = (size + BLOCK - 1) >>> BLOCK_SHIFT;
+    if (blocks > leaves) {
+      leaves = Integer.highestOneBit(Math.max(1, blocks - 1)) << 1;
+      blockMaxEnds = new int[2 * leaves];
+      Arrays.fill(blockMaxEnds, Integer.MIN_VALUE);
+      fromBlock = 0;
+    }
+    fromBlock = Math.min(fromBlock, blocks);
+    if (previous > blocks) {
+      Arrays.fill(blockMaxEnds, leaves + blocks, leaves + previous, Integer.MIN_VALUE);
+    }
+    for (int block = fromBlock; block < blocks; block++) {
+      int max = Integer.MIN_VALUE;
+      int blockEnd = Math.min((block + 1) << BLOCK_SHIFT, size);
+      for (int i = block << BLOCK_SHIFT; i < blockEnd; i++) {
+        max = Math.max(max, ends[i]);
+      }
+      blockMaxEnds[leaves + block] = max;
+    }
+    // leaves from fromBlock up to the last one in use, or the last one emptied, changed
+    int last = leaves + Math.max(Math.max(blocks, previous), fromBlock + 1) - 1;
+    for (int lo = (leaves + fromBlock) >>> 1, hi = last >>> 1; lo > 0; lo >>>= 1, hi >>>= 1) {
+      for (int node = lo; node <= hi; node++) {
+        blockMaxEnds[node] = Math.max(blockMaxEnds[2 * node], blockMaxEnds[2 * node + 1]);
+      }
+    }
+  }
+
+  // First block at or after fromBlock that starts before index to and has an event ending after low, or -1
+  private int nextRunningBlock(int fromBlock, int low, int to) {
+    if ((long) fromBlock << BLOCK_SHIFT >= to) {
+      return -1;
+    }
+    int block = nextRunningBlock(1, 0, leaves, fromBlock, low);
+    return block >= 0 && (long) block << BLOCK_SHIFT < to ? block : -1;
+  }
+
+  private int nextRunningBlock(int node, int lo, int hi, int fromBlock, int low) {
+    if (hi <= fromBlock || blockMaxEnds[node] <= low) {
+      return -1;
+    }
+    if (node >= leaves) {
+      return lo;
+    }
+    int mid = (lo + hi) >>> 1;
+    int block = nextRunningBlock(2 * node, lo, mid, fromBlock, low);
+    return block >= 0 ? block : nextRunningBlock(2 * node + 1, mid, hi, fromBlock, low);
+  }
+
+  // First sorted index whose start is >= key
+  private int lowerBound(int key) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (starts[mid] < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Compares bytes per event and scan throughput of the original per-object list, the
+   * interval-tree backed EventScheduler and this columnar store.
+   * Run with a large heap, e.g. java -Xmx4g ColumnarEventStore
+   */
+  public static void main(String[] args) {
+    ColumnarEventStore store = new ColumnarEventStore();
+    store.addEvent(10, 15);
+    store.addEvent(5, 12);
+    store.addEvent(14, 20);
+    store.addEvent(8, 18);
+    System.out.println("Overlapping [6, 16]: " + store.findOverlappingEvents(6, 16));
+    store.removeEvent(5, 12);
+    System.out.println("After removing [5, 12]: " + store.findOverlappingEvents(6, 16));
+
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    int span = n * 10;
+    Random random = new Random(42);
+    int[] eventStarts = new int[n];
+    int[] eventEnds = new int[n];
+    for (int i = 0; i < n; i++) {
+      eventStarts[i] = random.nextInt(span);
+      eventEnds[i] = eventStarts[i] + 1 + random.nextInt(100);
+    }
+
+    long before = usedHeap();
+    List<EventScheduler.Event> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      list.add(new EventScheduler.Event(eventStarts[i], eventEnds[i]));
+    }
+    long listBytes = usedHeap() - before;
+
+    before = usedHeap();
+    EventScheduler scheduler = new EventScheduler();
+    for (int i = 0; i < n; i++) {
+      scheduler.addEvent(eventStarts[i], eventEnds[i]);
+    }
+    long treeBytes = usedHeap() - before;
+
+    before = usedHeap();
+    ColumnarEventStore columns = new ColumnarEventStore();
+    for (int i = 0; i < n; i++) {
+      columns.addEvent(eventStarts[i], eventEnds[i]);
+    }
+    columns.countOverlappingEvents(0, 0); // sort once
+    long columnBytes = usedHeap() - before;
+
+    System.out.printf("Bytes per event: list of Event %.1f, interval tree %.1f, columnar %.1f%n",
+        (double) listBytes / n, (double) treeBytes / n, (double) columnBytes / n);
+
+    // full scans: every event is examined (list) or every candidate run is walked (tree / columns)
+    int rounds = 10;
+    long found = 0;
+    long startNanos = System.nanoTime();
+    for (int r = 0; r < rounds; r++) {
+      for (EventScheduler.Event event : list) {
+        if (event.start < span && event.end > 0) {
+          found++;
+        }
+      }
+    }
+    double listRate = (double) n * rounds / (System.nanoTime() - startNanos) * 1e3;
+
+    startNanos = System.nanoTime();
+    for (int r = 0; r < rounds; r++) {
+      found += scheduler.findOverlappingEvents(0, span).size();
+    }
+    double treeRate = (double) n * rounds / (System.nanoTime() - startNanos) * 1e3;
+
+    startNanos = System.nanoTime();
+    for (int r = 0; r < rounds; r++) {
+      found += columns.countOverlappingEvents(0, span);
+    }
+    double columnRate = (double) n * rounds / (System.nanoTime() - startNanos) * 1e3;
+
+    System.out.printf("Full scan, million events/s: list %.1f, interval tree %.1f, columnar %.1f%n",
+        listRate, treeRate, columnRate);
+
+    // narrow windows: index lookup plus a short candidate run
+    int queries = 200_000;
+    startNanos = System.nanoTime();
+    for (int q = 0; q < queries; q++) {
+      int low = random.nextInt(span);
+      found += scheduler.findOverlappingEvents(low, low + 1000).size();
+    }
+    double treeQueries = queries / ((System.nanoTime() - startNanos) / 1e9);
+
+    startNanos = System.nanoTime();
+    for (int q = 0; q < queries; q++) {
+      int low = random.nextInt(span);
+      found += columns.countOverlappingEvents(low, low + 1000);
+    }
+    double columnQueries = queries / ((System.nanoTime() - startNanos) / 1e9);
+
+    System.out.printf("Narrow windows, queries/s: interval tree %.0f, columnar %.0f (checksum %d)%n",
+        treeQueries, columnQueries, found);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,380 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Memory-compact StudentGradingSystem for very large registries: no object per student.
+ * <p>
+ * Every name is interned once into a growing byte arena as UTF-8 and gets a dense int id. An id indexes
+ * int arrays holding where the name starts in the arena, the grade, and the student's position in its
+ * grade group. Names are found through an open-addressing table of (hash, id) longs whose candidates are
+ * compared against the bytes in the arena, so the table holds no references. A grade group is a plain int
+ * array of ids with swap-remove, and the groups sit in a TreeMap keyed by grade, one entry per distinct
+ * grade rather than per student.
+ * <p>
+ * addStudent / removeStudent / getGrade: O(L) expected for a name of L bytes, plus O(log D) over the D
+ * distinct grades when a group is created or emptied
+ * getTopStudents / getLowestStudents / getStudentsInGradeRange: O(log D + result)
+ * <p>
+ * A removed student keeps its id and arena bytes, so removing and re-adding a name reuses them; the arena
+ * only grows with distinct names ever seen.
+ */
+class CompactStudentRegistry {
+
+  interface StudentVisitor {
+    // Returns false to stop the walk
+    boolean visit(int id, int grade);
+  }
+
+  private static final int NO_GRADE = Integer.MIN_VALUE;
+  private static final int FREE = -1;
+
+  private static final class GradeGroup {
+    int[] ids = new int[4];
+    int size;
+  }
+
+  private byte[] arena = new byte[1 << 10];
+  private int arenaLength;
+  // id -> (arena offset, grade) side by side, so a lookup reads both from one cache line; the name ends
+  // where the next id's starts, and the grade is NO_GRADE when the student was removed
+  private int[] meta = new int[32];
+  private int[] groupSlot = new int[16]; // id -> index in its grade group's ids
+  private int ids; // ids handed out
+  private int size; // students with a grade
+  // open addressing, one long per slot: the name's hash in the high half and id + 1 in the low half,
+  // 0 when free; comparing hashes first means a probe only reads the arena for a near-certain match
+  private long[] table = new long[16];
+  private final TreeMap<Integer, GradeGroup> studentsByGrade = new TreeMap<>();
+
+  int size() {
+    return size;
+  }
+
+  void addStudent(String name, int grade) {
+    if (grade == NO_GRADE) {
+      throw new IllegalArgumentException("grade " + grade + " is reserved");
+    }
+    int id = find(name);
+    if (id == FREE) {
+      id = intern(name);
+    }
+    int previous = meta[2 * id + 1];
+    if (previous == grade) {
+      return;
+    }
+    if (previous == NO_GRADE) {
+      size++;
+    } else {
+      leaveGroup(id, previous);
+    }
+    meta[2 * id + 1] = grade;
+    GradeGroup group = studentsByGrade.computeIfAbsent(grade, (g) -> new GradeGroup());
+    if (group.size == group.ids.length) {
+      group.ids = Arrays.copyOf(group.ids, group.size + (group.size >> 1));
+    }
+    groupSlot[id] = group.size;
+    group.ids[group.size++] = id;
+  }
+
+  // Returns the removed student's grade, or -1 when absent
+  int removeStudent(String name) {
+    int id = find(name);
+    if (id == FREE || meta[2 * id + 1] == NO_GRADE) {
+      return -1;
+    }
+    int grade = meta[2 * id + 1];
+    leaveGroup(id, grade);
+    meta[2 * id + 1] = NO_GRADE;
+    size--;
+    return grade;
+  }
+
+  int getGrade(String name) {
+    int id = find(name);
+    return id == FREE || meta[2 * id + 1] == NO_GRADE ? -1 : meta[2 * id + 1];
+  }
+
+  // Decodes the interned name of an id handed to a StudentVisitor
+  String name(int id) {
+    int start = meta[2 * id];
+    return new String(arena, start, nameEnd(id) - start, StandardCharsets.UTF_8);
+  }
+
+  void getTopStudents(StudentVisitor visitor) {
+    Map.Entry<Integer, GradeGroup> top = studentsByGrade.lastEntry();
+    if (top != null) {
+      visitGroup(top.getKey(), top.getValue(), visitor);
+    }
+  }
+
+  void getLowestStudents(StudentVisitor visitor) {
+    Map.Entry<Integer, GradeGroup> lowest = studentsByGrade.firstEntry();
+    if (lowest != null) {
+      visitGroup(lowest.getKey(), lowest.getValue(), visitor);
+    }
+  }
+
+  // Grades ascending; students within a grade in no particular order
+  void getStudentsInGradeRange(int g1, int g2, StudentVisitor visitor) {
+    if (g1 > g2) {
+      return;
+    }
+    for (Map.Entry<Integer, GradeGroup> entry : studentsByGrade.subMap(g1, true, g2, true).entrySet()) {
+      if (!visitGroup(entry.getKey(), entry.getValue(), visitor)) {
+        return;
+      }
+    }
+  }
+
+  // Bytes held by the arrays of this registry, excluding the TreeMap entries (one per distinct grade)
+  long footprintBytes() {
+    long bytes = arena.length + 4L * (meta.length + groupSlot.length) + 8L * table.length;
+    for (GradeGroup group : studentsByGrade.values()) {
+      bytes += 4L * group.ids.length;
+    }
+    return bytes;
+  }
+
+  private boolean visitGroup(int grade, GradeGroup group, StudentVisitor visitor) {
+    for (int i = 0; i < group.size; i++) {
+      if (!visitor.visit(group.ids[i], grade)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void leaveGroup(int id, int grade) {
+    GradeGroup group = studentsByGrade.get(grade);
+    int slot = groupSlot[id];
+    int last = group.ids[--group.size];
+    group.ids[slot] = last;
+    groupSlot[last] = slot;
+    if (group.size == 0) {
+      studentsByGrade.remove(grade);
+    }
+  }
+
+  // Interns a name that find did not return, and gives it the next id
+  private int intern(String name) {
+    byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+    int id = ids++;
+    if (id == groupSlot.length) {
+      int capacity = id + (id >> 1);
+      meta = Arrays.copyOf(meta, 2 * capacity);
+      groupSlot = Arrays.copyOf(groupSlot, capacity);
+    }
+    if (arenaLength + utf8.length > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arenaLength + utf8.length, arena.length + (arena.length >> 1)));
+    }
+    System.arraycopy(utf8, 0, arena, arenaLength, utf8.length);
+    meta[2 * id] = arenaLength;
+    meta[2 * id + 1] = NO_GRADE;
+    arenaLength += utf8.length;
+    insert(table, hash(name), id);
+    if (ids * 2 > table.length) {
+      long[] grown = new long[table.length * 2];
+      for (long entry : table) {
+        if (entry != 0) {
+          insert(grown, (int) (entry >>> 32), (int) entry - 1);
+        }
+      }
+      table = grown;
+    }
+    return id;
+  }
+
+  private static void insert(long[] table, int hash, int id) {
+    int slot = hash & (table.length - 1);
+    while (table[slot] != 0) {
+      slot = (slot + 1) & (table.length - 1);
+    }
+    table[slot] = (long) hash << 32 | (id + 1);
+  }
+
+  // Probes with the String's own (cached) hash; ASCII names are compared char by char against the arena
+  private int find(String name) {
+    int h = hash(name);
+    for (int slot = h & (table.length - 1); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+      long entry = table[slot];
+      if ((int) (entry >>> 32) == h) {
+        int id = (int) entry - 1;
+        if (sameName(id, name)) {
+          return id;
+        }
+      }
+    }
+    return FREE;
+  }
+
+  private boolean sameName(int id, String name) {
+    int start = meta[2 * id];
+    int length = nameEnd(id) - start;
+    if (length == name.length()) {
+      for (int i = 0; i < length; i++) {
+        char c = name.charAt(i);
+        if (c >= 0x80) {
+          return sameUtf8(start, length, name);
+        }
+        if (arena[start + i] != c) {
+          return false;
+        }
+      }
+      return true;
+    }
+    // a non-ASCII name takes more UTF-8 bytes than chars
+    return length > name.length() && sameUtf8(start, length, name);
+  }
+
+  private boolean sameUtf8(int start, int length, String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    return Arrays.equals(arena, start, start + length, bytes, 0, bytes.length);
+  }
+
+  private int nameEnd(int id) {
+    return id + 1 < ids ? meta[2 * id + 2] : arenaLength;
+  }
+
+  // String.hashCode, mixed so linear probing sees well spread low bits; the table keeps it, so growing the
+  // table never rehashes names from the arena
+  private static int hash(String name) {
+    int h = name.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    return h ^ (h >>> 13);
+  }
+
+  /**
+   * Demo, a randomized check against StudentGradingSystem and the heap footprint of both layouts.
+   * Run with a large heap, e.g. java -Xms3g -Xmx3g CompactStudentRegistry 2000000
+   */
+  public static void main(String[] args) {
+    CompactStudentRegistry registry = new CompactStudentRegistry();
+    registry.addStudent("Alice", 95);
+    registry.addStudent("Bob", 89);
+    registry.addStudent("Charlie", 72);
+    registry.addStudent("Dave", 88);
+    registry.addStudent("Zoë", 95);
+    registry.addStudent("Bob", 91);
+    registry.removeStudent("Charlie");
+    System.out.println("Bob's grade: " + registry.getGrade("Bob")); // 91
+    List<String> names = new ArrayList<>();
+    registry.getTopStudents((id, grade) -> names.add(registry.name(id) + " " + grade));
+    System.out.println("Top students: " + names); // [Alice 95, Zoë 95]
+    names.clear();
+    registry.getStudentsInGradeRange(80, 92, (id, grade) -> names.add(registry.name(id) + " " + grade));
+    System.out.println("Students with grades between 80 and 92: " + names); // [Dave 88, Bob 91]
+
+    checkAgainstStudentGradingSystem();
+
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    SplittableRandom random = new SplittableRandom(42);
+    String[] studentNames = new String[n];
+    int[] studentGrades = new int[n];
+    for (int i = 0; i < n; i++) {
+      studentNames[i] = "student-" + i;
+      studentGrades[i] = random.nextInt(101);
+    }
+    long before = usedHeap();
+    long startNanos = System.nanoTime();
+    StudentGradingSystem objects = new StudentGradingSystem();
+    for (int i = 0; i < n; i++) {
+      objects.addStudent(studentNames[i], studentGrades[i]);
+    }
+    double objectsAdd = (System.nanoTime() - startNanos) / (double) n;
+    long objectsBytes = usedHeap() - before;
+
+    before = usedHeap();
+    startNanos = System.nanoTime();
+    CompactStudentRegistry compact = new CompactStudentRegistry();
+    for (int i = 0; i < n; i++) {
+      compact.addStudent(studentNames[i], studentGrades[i]);
+    }
+    double compactAdd = (System.nanoTime() - startNanos) / (double) n;
+    long compactBytes = usedHeap() - before;
+
+    // the StudentGradingSystem keeps the caller's name Strings alive, so charge them to it as well
+    long nameStrings = 0;
+    for (String name : studentNames) {
+      nameStrings += 24 + 16 + ((name.length() + 7) & ~7); // String, byte[] header, Latin-1 bytes
+    }
+    System.out.printf("Bytes per student (%d students): StudentGradingSystem %.1f + %.1f for name Strings,"
+            + " compact %.1f (arrays alone %.1f)%n", n, (double) objectsBytes / n, (double) nameStrings / n,
+        (double) compactBytes / n, (double) compact.footprintBytes() / n);
+    System.out.printf("addStudent ns/op: StudentGradingSystem %.0f, compact %.0f%n", objectsAdd, compactAdd);
+
+    // look names up through equal but distinct Strings, as a caller parsing requests would
+    String[] queries = new String[1_000_000];
+    for (int q = 0; q < queries.length; q++) {
+      queries[q] = new String(studentNames[random.nextInt(n)]);
+    }
+    long checksum = 0;
+    startNanos = System.nanoTime();
+    for (String query : queries) {
+      checksum += objects.getGrade(query);
+    }
+    double objectsGet = (System.nanoTime() - startNanos) / 1e6;
+    startNanos = System.nanoTime();
+    for (String query : queries) {
+      checksum += compact.getGrade(query);
+    }
+    double compactGet = (System.nanoTime() - startNanos) / 1e6;
+    System.out.printf("getGrade ns/op: StudentGradingSystem %.0f, compact %.0f (checksum %d)%n",
+        objectsGet, compactGet, checksum);
+  }
+
+  // Random adds, regrades and removals over non-ASCII names; every query compared with StudentGradingSystem
+  private static void checkAgainstStudentGradingSystem() {
+    Random random = new Random(5);
+    StudentGradingSystem expected = new StudentGradingSystem();
+    CompactStudentRegistry registry = new CompactStudentRegistry();
+    String[] names = new String[3_000];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = (i % 3 == 0 ? "Łukasz-" : i % 3 == 1 ? "学生-" : "s") + i;
+    }
+    for (int op = 0; op < 100_000; op++) {
+      String name = names[random.nextInt(names.length)];
+      if (random.nextInt(4) == 0) {
+        int grade = expected.getGrade(name);
+        expected.removeStudent(name);
+        if (registry.removeStudent(name) != grade) {
+          throw new AssertionError("removeStudent(" + name + ") differs");
+        }
+      } else {
+        int grade = random.nextInt(60);
+        expected.addStudent(name, grade);
+        registry.addStudent(name, grade);
+      }
+      if (op % 1_000 != 0) {
+        continue;
+      }
+      for (String each : names) {
+        if (registry.getGrade(each) != expected.getGrade(each)) {
+          throw new AssertionError("getGrade(" + each + ") differs after " + op + " operations");
+        }
+      }
+      int g1 = random.nextInt(60);
+      int g2 = g1 + random.nextInt(20);
+      Set<String> actual = new HashSet<>();
+      registry.getStudentsInGradeRange(g1, g2, (id, grade) -> actual.add(registry.name(id) + " " + grade));
+      Set<String> inRange = new HashSet<>();
+      for (Set<StudentGradingSystem.Student> group : expected.studentsByGrade.subMap(g1, true, g2, true).values()) {
+        for (StudentGradingSystem.Student student : group) {
+          inRange.add(student.toString());
+        }
+      }
+      if (!actual.equals(inRange) || registry.size() != expected.studentsByName.size()) {
+        throw new AssertionError("grade range [" + g1 + ", " + g2 + "] differs after " + op + " operations");
+      }
+    }
+    System.out.println("Compact registry matched StudentGradingSystem over 100000 operations");
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
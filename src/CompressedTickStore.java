@@ -0,0 +1,397 @@
+import java.util.*;
+
+/**
+ * Compressed tick history for one symbol: the storage engine behind SimpleStockPriceManager's queries for
+ * histories too long to keep as a TreeMap (about 80 bytes per tick for 8 bytes of data).
+ * <p>
+ * Ticks are appended to an open head block of plain arrays. A full head is sealed into an immutable block
+ * of BLOCK_TICKS ticks, bit-packed Gorilla style:
+ * - timestamps as delta-of-delta, so a regular feed costs one bit per tick
+ * - prices as the delta to the previous price (zigzag), so an unchanged price costs one bit; XOR suits
+ *   float prices, but int prices compress better as deltas
+ * each written with a short prefix code choosing the payload width. The first timestamp of every block is
+ * kept in a sparse index that is binary-searched, so a query decodes a single block.
+ * <p>
+ * A tick at or before the last sealed timestamp (a late tick or a correction) cannot go into an immutable
+ * block; it goes to a small TreeMap overlay that wins over the blocks for the same timestamp.
+ * <p>
+ * addStockPrice: O(1) amortized in order, O(BLOCK_TICKS) into the head block, O(log L) for L late ticks
+ * getStockPriceAt / getNearestEarlierStockPrice: O(log B + BLOCK_TICKS) for B blocks, plus O(log L)
+ * <p>
+ * Integer.MIN_VALUE is reserved as a timestamp.
+ */
+class CompressedTickStore {
+
+  static final int BLOCK_TICKS = 128;
+
+  private static final long NONE = Long.MIN_VALUE; // packed (timestamp, price) of no tick
+  // payload widths selected by the prefix codes 0, 10, 110, 1110 and 1111
+  private static final int[] TIMESTAMP_WIDTHS = {0, 7, 9, 12, 34};
+  private static final int[] PRICE_WIDTHS = {0, 6, 13, 20, 34};
+
+  private long[][] blocks = new long[16][];
+  private int[] firstTimestamps = new int[16];
+  private int blockCount;
+  private int lastSealedTimestamp = Integer.MIN_VALUE;
+  private final int[] headTimestamps = new int[BLOCK_TICKS];
+  private final int[] headPrices = new int[BLOCK_TICKS];
+  private int headSize;
+  private final TreeMap<Integer, Integer> late = new TreeMap<>();
+  private long size;
+
+  long size() {
+    return size;
+  }
+
+  void addStockPrice(int ts, int price) {
+    if (ts == Integer.MIN_VALUE) {
+      throw new IllegalArgumentException("timestamp " + ts + " is reserved");
+    }
+    if (ts <= lastSealedTimestamp) {
+      if (late.put(ts, price) == null && decodeFloor(blockFor(ts), ts, true) == NONE) {
+        size++;
+      }
+      return;
+    }
+    int at = headSize;
+    if (headSize == 0 || ts > headTimestamps[headSize - 1]) {
+      size++;
+    } else {
+      at = Arrays.binarySearch(headTimestamps, 0, headSize, ts);
+      if (at >= 0) {
+        headPrices[at] = price;
+        return;
+      }
+      at = -at - 1;
+      System.arraycopy(headTimestamps, at, headTimestamps, at + 1, headSize - at);
+      System.arraycopy(headPrices, at, headPrices, at + 1, headSize - at);
+      size++;
+    }
+    headTimestamps[at] = ts;
+    headPrices[at] = price;
+    if (++headSize == BLOCK_TICKS) {
+      seal();
+    }
+  }
+
+  Integer getStockPriceAt(int ts) {
+    Integer corrected = late.get(ts);
+    if (corrected != null) {
+      return corrected;
+    }
+    long tick;
+    if (headSize > 0 && ts >= headTimestamps[0]) {
+      int at = Arrays.binarySearch(headTimestamps, 0, headSize, ts);
+      tick = at >= 0 ? pack(ts, headPrices[at]) : NONE;
+    } else {
+      tick = decodeFloor(blockFor(ts), ts, true);
+    }
+    return tick == NONE ? null : price(tick);
+  }
+
+  int getNearestEarlierStockPrice(int ts) {
+    long tick;
+    if (headSize > 0 && ts >= headTimestamps[0]) {
+      int at = Arrays.binarySearch(headTimestamps, 0, headSize, ts);
+      at = at >= 0 ? at : -at - 2;
+      tick = pack(headTimestamps[at], headPrices[at]);
+    } else {
+      tick = decodeFloor(blockFor(ts), ts, false);
+    }
+    Map.Entry<Integer, Integer> corrected = late.floorEntry(ts);
+    if (corrected != null && (tick == NONE || corrected.getKey() >= timestamp(tick))) {
+      return corrected.getValue();
+    }
+    return tick == NONE ? -1 : price(tick);
+  }
+
+  // Heap bytes of the blocks, the index and the head, excluding the late-tick overlay
+  long footprintBytes() {
+    long bytes = 4L * firstTimestamps.length + 8L * blocks.length + 8L * BLOCK_TICKS;
+    for (int b = 0; b < blockCount; b++) {
+      bytes += 16 + 8L * blocks[b].length;
+    }
+    return bytes;
+  }
+
+  int lateTicks() {
+    return late.size();
+  }
+
+  // The last block whose first timestamp is at or before ts, or -1
+  private int blockFor(int ts) {
+    int low = 0;
+    int high = blockCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (firstTimestamps[mid] <= ts) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * Decodes block b up to ts: the tick at ts when exact, else the last tick at or before ts; NONE when
+   * there is none in the block.
+   */
+  private long decodeFloor(int b, int ts, boolean exact) {
+    if (b < 0) {
+      return NONE;
+    }
+    BitReader reader = new BitReader(blocks[b]);
+    long timestamp = firstTimestamps[b];
+    long price = (int) reader.read(32);
+    long delta = 0;
+    long floor = pack((int) timestamp, (int) price);
+    for (int i = 1; i < BLOCK_TICKS; i++) {
+      delta += unzigzag(reader.readCoded(TIMESTAMP_WIDTHS));
+      timestamp += delta;
+      if (timestamp > ts) {
+        break;
+      }
+      price += unzigzag(reader.readCoded(PRICE_WIDTHS));
+      floor = pack((int) timestamp, (int) price);
+    }
+    return exact && timestamp(floor) != ts ? NONE : floor;
+  }
+
+  private void seal() {
+    BitWriter writer = new BitWriter();
+    writer.write(headPrices[0], 32);
+    long previousDelta = 0;
+    for (int i = 1; i < BLOCK_TICKS; i++) {
+      long delta = (long) headTimestamps[i] - headTimestamps[i - 1];
+      writer.writeCoded(zigzag(delta - previousDelta), TIMESTAMP_WIDTHS);
+      writer.writeCoded(zigzag((long) headPrices[i] - headPrices[i - 1]), PRICE_WIDTHS);
+      previousDelta = delta;
+    }
+    if (blockCount == blocks.length) {
+      blocks = Arrays.copyOf(blocks, blockCount * 2);
+      firstTimestamps = Arrays.copyOf(firstTimestamps, blockCount * 2);
+    }
+    blocks[blockCount] = writer.toArray();
+    firstTimestamps[blockCount++] = headTimestamps[0];
+    lastSealedTimestamp = headTimestamps[BLOCK_TICKS - 1];
+    headSize = 0;
+  }
+
+  private static long pack(int ts, int price) {
+    return (long) ts << 32 | (price & 0xffffffffL);
+  }
+
+  private static int timestamp(long tick) {
+    return (int) (tick >> 32);
+  }
+
+  private static int price(long tick) {
+    return (int) tick;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  // Appends bit fields, low bits first, to a growing long[]
+  private static final class BitWriter {
+    private long[] words = new long[8];
+    private int bits;
+
+    void write(long value, int width) {
+      if (width == 0) {
+        return;
+      }
+      if (((bits + width) >>> 6) >= words.length) {
+        words = Arrays.copyOf(words, words.length * 2);
+      }
+      value &= width == 64 ? -1L : (1L << width) - 1;
+      int offset = bits & 63;
+      words[bits >>> 6] |= value << offset;
+      if (offset + width > 64) {
+        words[(bits >>> 6) + 1] |= value >>> (64 - offset);
+      }
+      bits += width;
+    }
+
+    // The prefix code picking the narrowest width that holds value (i ones, then a zero unless last)
+    void writeCoded(long value, int[] widths) {
+      int code = 0;
+      while (code < widths.length - 1 && (widths[code] == 0 ? value != 0 : value >>> widths[code] != 0)) {
+        code++;
+      }
+      write((1L << code) - 1, code);
+      if (code < widths.length - 1) {
+        write(0, 1);
+      }
+      write(value, widths[code]);
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(words, (bits + 63) >>> 6);
+    }
+  }
+
+  private static final class BitReader {
+    private final long[] words;
+    private int bits;
+
+    BitReader(long[] words) {
+      this.words = words;
+    }
+
+    long read(int width) {
+      if (width == 0) {
+        return 0;
+      }
+      int offset = bits & 63;
+      long value = words[bits >>> 6] >>> offset;
+      if (offset + width > 64) {
+        value |= words[(bits >>> 6) + 1] << (64 - offset);
+      }
+      bits += width;
+      return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    // Prefix and payload (at most 38 bits together) come out of one 64-bit window
+    long readCoded(int[] widths) {
+      int word = bits >>> 6;
+      int offset = bits & 63;
+      long window = words[word] >>> offset;
+      if (offset != 0 && word + 1 < words.length) {
+        window |= words[word + 1] << (64 - offset);
+      }
+      int last = widths.length - 1;
+      int code = Math.min(Long.numberOfTrailingZeros(~window), last);
+      int prefix = code < last ? code + 1 : code;
+      int width = widths[code];
+      bits += prefix + width;
+      return width == 0 ? 0 : (window >>> prefix) & ((1L << width) - 1);
+    }
+  }
+
+  /**
+   * Demo, a randomized check against a TreeMap with late ticks and overwrites, and bytes per tick and
+   * query latency of this store against SimpleStockPriceManager's TreeMap.
+   * Run with a large heap, e.g. java -Xms3g -Xmx3g CompressedTickStore 5000000
+   */
+  public static void main(String[] args) {
+    CompressedTickStore store = new CompressedTickStore();
+    store.addStockPrice(1, 100);
+    store.addStockPrice(2, 150);
+    store.addStockPrice(4, 200);
+    store.addStockPrice(5, 250);
+    System.out.println("Price at timestamp 2: " + store.getStockPriceAt(2)); // 150
+    System.out.println("Nearest price at or before timestamp 3: " + store.getNearestEarlierStockPrice(3)); // 150
+    System.out.println("Nearest price at or before timestamp 6: " + store.getNearestEarlierStockPrice(6)); // 250
+
+    checkAgainstTreeMap();
+
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+    SplittableRandom random = new SplittableRandom(42);
+    int[] timestamps = new int[n];
+    int[] prices = new int[n];
+    int ts = 1_700_000_000;
+    int price = 10_000;
+    for (int i = 0; i < n; i++) {
+      // mostly one tick a second, with gaps; prices walk in cents and often repeat
+      ts += random.nextInt(20) == 0 ? 1 + random.nextInt(300) : 1;
+      price = Math.max(1, price + (random.nextInt(3) == 0 ? random.nextInt(41) - 20 : 0));
+      timestamps[i] = ts;
+      prices[i] = price;
+    }
+
+    long before = usedHeap();
+    SimpleStockPriceManager tree = new SimpleStockPriceManager();
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < n; i++) {
+      tree.addStockPrice(timestamps[i], prices[i]);
+    }
+    double treeAdd = (System.nanoTime() - startNanos) / (double) n;
+    long treeBytes = usedHeap() - before;
+
+    before = usedHeap();
+    CompressedTickStore compressed = new CompressedTickStore();
+    startNanos = System.nanoTime();
+    for (int i = 0; i < n; i++) {
+      compressed.addStockPrice(timestamps[i], prices[i]);
+    }
+    double compressedAdd = (System.nanoTime() - startNanos) / (double) n;
+    long compressedBytes = usedHeap() - before;
+    System.out.printf("Bytes per tick (%d ticks): TreeMap %.1f, compressed %.2f (blocks and index %.2f)%n", n,
+        (double) treeBytes / n, (double) compressedBytes / n, (double) compressed.footprintBytes() / n);
+    System.out.printf("addStockPrice ns/op: TreeMap %.0f, compressed %.0f%n", treeAdd, compressedAdd);
+
+    int queries = 1_000_000;
+    int[] probes = new int[queries];
+    for (int q = 0; q < queries; q++) {
+      probes[q] = random.nextInt(timestamps[0], ts + 1);
+    }
+    long checksum = 0;
+    startNanos = System.nanoTime();
+    for (int probe : probes) {
+      checksum += tree.getNearestEarlierStockPrice(probe);
+      Integer exact = tree.getStockPriceAt(probe);
+      checksum += exact == null ? 0 : exact;
+    }
+    double treeQuery = (System.nanoTime() - startNanos) / (2.0 * queries);
+    startNanos = System.nanoTime();
+    for (int probe : probes) {
+      checksum -= compressed.getNearestEarlierStockPrice(probe);
+      Integer exact = compressed.getStockPriceAt(probe);
+      checksum -= exact == null ? 0 : exact;
+    }
+    double compressedQuery = (System.nanoTime() - startNanos) / (2.0 * queries);
+    if (checksum != 0) {
+      throw new AssertionError("compressed store answered differently from the TreeMap");
+    }
+    System.out.printf("getNearestEarlierStockPrice + getStockPriceAt ns/op: TreeMap %.0f, compressed %.0f%n",
+        treeQuery, compressedQuery);
+  }
+
+  // Mostly in-order ticks with gaps, late ticks and overwrites; every query compared with a TreeMap
+  private static void checkAgainstTreeMap() {
+    Random random = new Random(3);
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    CompressedTickStore store = new CompressedTickStore();
+    int ts = -50_000;
+    for (int op = 0; op < 200_000; op++) {
+      int tick;
+      int choice = random.nextInt(100);
+      if (choice < 90) {
+        ts += random.nextInt(10) == 0 ? random.nextInt(1 << 20) : random.nextInt(3);
+        tick = ts;
+      } else {
+        tick = ts - random.nextInt(5_000); // late tick or overwrite, maybe of a sealed one
+      }
+      int price = choice % 7 == 0 ? random.nextInt() : 1_000 + random.nextInt(50);
+      expected.put(tick, price);
+      store.addStockPrice(tick, price);
+      if (store.size() != expected.size()) {
+        throw new AssertionError("size differs after " + op + " ticks");
+      }
+      for (int q = 0; q < 3; q++) {
+        int probe = ts - random.nextInt(20_000);
+        Map.Entry<Integer, Integer> floor = expected.floorEntry(probe);
+        if (!Objects.equals(store.getStockPriceAt(probe), expected.get(probe))
+            || store.getNearestEarlierStockPrice(probe) != (floor == null ? -1 : floor.getValue())) {
+          throw new AssertionError("query at " + probe + " differs after " + op + " ticks");
+        }
+      }
+    }
+    System.out.println("Compressed store matched a TreeMap over 200000 ticks (" + store.lateTicks() + " late)");
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,192 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe CourseScheduler. Courses live in a ConcurrentSkipListMap (start -> end) so reads never lock,
+ * and admission is guarded by locks striped over the time axis: time is cut into buckets of bucketWidth,
+ * bucket b is guarded by stripe b % stripes, and a course locks the stripes of every bucket in
+ * [start, max(start, end - 1)].
+ * <p>
+ * Two courses that the floor/ceiling check would reject against each other always share a time point,
+ * so they always share a stripe and their check-and-insert runs one after the other. Courses in
+ * different parts of the timeline take different stripes and are admitted in parallel.
+ * Locks are taken in increasing stripe order, so there is no deadlock.
+ */
+public class ConcurrentCourseScheduler {
+
+  private final ConcurrentSkipListMap<Integer, Integer> courseSchedule = new ConcurrentSkipListMap<>();
+  private final ReentrantLock[] stripes;
+  private final int bucketWidth;
+
+  public ConcurrentCourseScheduler() {
+    this(64, 60);
+  }
+
+  public ConcurrentCourseScheduler(int stripeCount, int bucketWidth) {
+    if (stripeCount <= 0 || bucketWidth <= 0) {
+      throw new IllegalArgumentException("stripeCount and bucketWidth must be positive");
+    }
+    this.stripes = new ReentrantLock[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    this.bucketWidth = bucketWidth;
+  }
+
+  // Method to add a course to the system, atomically with respect to every overlapping course
+  public boolean addCourse(int startTime, int endTime) {
+    int[] locked = lock(startTime, endTime);
+    try {
+      // Same checks as CourseScheduler; every course that could fail them holds one of our stripes
+      Map.Entry<Integer, Integer> floorEntry = courseSchedule.floorEntry(startTime);
+      if (floorEntry != null && floorEntry.getValue() > startTime) {
+        return false; // Overlap with an existing course
+      }
+      Map.Entry<Integer, Integer> ceilingEntry = courseSchedule.ceilingEntry(startTime);
+      if (ceilingEntry != null && ceilingEntry.getKey() < endTime) {
+        return false; // Overlap with an existing course
+      }
+      courseSchedule.put(startTime, endTime);
+      return true;
+    } finally {
+      unlock(locked);
+    }
+  }
+
+  // Method to remove the course starting at startTime
+  public boolean removeCourse(int startTime) {
+    while (true) {
+      Integer endTime = courseSchedule.get(startTime);
+      if (endTime == null) {
+        return false;
+      }
+      int[] locked = lock(startTime, endTime);
+      try {
+        if (courseSchedule.remove(startTime, endTime)) {
+          return true;
+        }
+      } finally {
+        unlock(locked);
+      }
+      // replaced between the read and the lock, look again
+    }
+  }
+
+  // Method to get all courses within a specified time range; reads a weakly consistent view without locking
+  public List<Map.Entry<Integer, Integer>> getCoursesInRange(int startTime, int endTime) {
+    return new ArrayList<>(courseSchedule.subMap(startTime, true, endTime, true).entrySet());
+  }
+
+  // Method to check if a student can be enrolled in a course
+  public boolean canEnroll(int startTime, int endTime) {
+    return addCourse(startTime, endTime);
+  }
+
+  // Locks the stripes covering [start, max(start, end - 1)] in increasing order and returns them
+  private int[] lock(int startTime, int endTime) {
+    long firstBucket = Math.floorDiv((long) startTime, bucketWidth);
+    long lastBucket = Math.floorDiv(Math.max((long) startTime, (long) endTime - 1), bucketWidth);
+    int[] indexes;
+    if (lastBucket - firstBucket + 1 >= stripes.length) {
+      indexes = new int[stripes.length];
+      for (int i = 0; i < indexes.length; i++) {
+        indexes[i] = i;
+      }
+    } else {
+      indexes = new int[(int) (lastBucket - firstBucket + 1)];
+      for (int i = 0; i < indexes.length; i++) {
+        indexes[i] = (int) Math.floorMod(firstBucket + i, (long) stripes.length);
+      }
+      Arrays.sort(indexes); // fewer buckets than stripes, so the indexes are distinct
+    }
+    for (int index : indexes) {
+      stripes[index].lock();
+    }
+    return indexes;
+  }
+
+  private void unlock(int[] indexes) {
+    for (int i = indexes.length - 1; i >= 0; i--) {
+      stripes[indexes[i]].unlock();
+    }
+  }
+
+  /**
+   * Contention benchmark: the same random admissions against this scheduler and against
+   * CourseScheduler behind one global lock, at 1 to 64 threads.
+   */
+  public static void main(String[] args) throws Exception {
+    ConcurrentCourseScheduler scheduler = new ConcurrentCourseScheduler();
+    System.out.println(scheduler.addCourse(9, 11)); // true
+    System.out.println(scheduler.addCourse(13, 15)); // true
+    System.out.println(scheduler.addCourse(10, 12)); // false (overlaps with 9-11)
+    System.out.println(scheduler.addCourse(11, 13)); // true
+    System.out.println(scheduler.removeCourse(11)); // true
+    System.out.println("Courses between 9 and 15: " + scheduler.getCoursesInRange(9, 15));
+
+    // 2_000_000 as the argument gives the full-size run
+    int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    int timeline = operations * 25; // same course density at every size
+    System.out.println("threads  global-lock ops/s  striped ops/s  admitted (global / striped)");
+    for (int threads = 1; threads <= 64; threads *= 2) {
+      CourseScheduler plain = new CourseScheduler();
+      Object globalLock = new Object();
+      AtomicInteger globalAdmitted = new AtomicInteger();
+      double global = run(threads, operations, timeline, (start, end) -> {
+        boolean added;
+        synchronized (globalLock) {
+          added = plain.addCourse(start, end);
+        }
+        if (added) {
+          globalAdmitted.incrementAndGet();
+        }
+      });
+
+      ConcurrentCourseScheduler striped = new ConcurrentCourseScheduler();
+      AtomicInteger stripedAdmitted = new AtomicInteger();
+      double concurrent = run(threads, operations, timeline, (start, end) -> {
+        if (striped.addCourse(start, end)) {
+          stripedAdmitted.incrementAndGet();
+        }
+      });
+      System.out.printf("%7d  %17.0f  %13.0f  %d / %d%n", threads, global, concurrent,
+          globalAdmitted.get(), stripedAdmitted.get());
+    }
+  }
+
+  private interface Admission {
+    void admit(int start, int end);
+  }
+
+  // Runs operations admissions spread over threads and returns admissions per second
+  private static double run(int threads, int operations, int timeline, Admission admission) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    CountDownLatch ready = new CountDownLatch(threads);
+    CountDownLatch go = new CountDownLatch(1);
+    List<Future<?>> done = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      long seed = t;
+      done.add(pool.submit(() -> {
+        SplittableRandom random = new SplittableRandom(seed);
+        ready.countDown();
+        go.await();
+        for (int i = 0; i < operations / threads; i++) {
+          int start = random.nextInt(timeline);
+          admission.admit(start, start + 1 + random.nextInt(30));
+        }
+        return null;
+      }));
+    }
+    ready.await();
+    long startNanos = System.nanoTime();
+    go.countDown();
+    for (Future<?> future : done) {
+      future.get();
+    }
+    long elapsed = System.nanoTime() - startNanos;
+    pool.shutdown();
+    return (operations / threads) * (double) threads / (elapsed / 1e9);
+  }
+}
@@ -0,0 +1,374 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe LeaderBoardSystem for heavy score ingestion. addPoints never touches the ranked indexes:
+ * it adds the delta to a coalescing buffer (name -> summed delta) in one of several stripes chosen by the
+ * player's hash, so writers on different stripes do not contend and a player scoring a hundred times
+ * between merges costs one index update instead of a hundred.
+ * <p>
+ * A background merger swaps every stripe's buffer for an empty one every mergeInterval and applies the
+ * collected deltas to the LeaderBoardSystem under the write lock, in one batch. Queries take the read lock.
+ * <p>
+ * Staleness bound: every stripe buffers at most maxPendingPerStripe distinct players; a writer that would
+ * add one more waits for the running merge, or runs a merge itself. So one merge applies at most
+ * stripes * maxPendingPerStripe deltas, O(stripes * maxPendingPerStripe * log N), whatever the ingest rate.
+ * And once the last merge started more than 2 * mergeInterval ago, addPoints stops buffering ahead the same
+ * way, which covers a merger thread starved of CPU. So a query sees every addPoints that returned more than
+ * 2 * mergeInterval + (the cost of one full merge) earlier. maxObservedStalenessMillis reports the worst case
+ * seen so far, and flush() applies everything buffered before it returns, for callers that need to read
+ * their own writes.
+ */
+public class ConcurrentLeaderBoard implements AutoCloseable {
+
+  private static final class Stripe {
+    final ReentrantLock lock = new ReentrantLock();
+    HashMap<String, Integer> deltas = new HashMap<>();
+  }
+
+  private final LeaderBoardSystem board = new LeaderBoardSystem();
+  private final ReentrantReadWriteLock boardLock = new ReentrantReadWriteLock();
+  private final Stripe[] stripes;
+  private final ReentrantLock mergeLock = new ReentrantLock(); // one merge (or removePlayer) at a time
+  private final long maxDelayNanos;
+  private final int maxPendingPerStripe; // distinct players buffered per stripe before writers merge
+  private final ScheduledExecutorService merger;
+  private final LongAdder accepted = new LongAdder(); // addPoints calls
+  private final LongAdder applied = new LongAdder(); // index updates after coalescing
+  private final AtomicLong maxStalenessNanos = new AtomicLong();
+  private volatile long lastSwapNanos = System.nanoTime(); // written under mergeLock
+
+  public ConcurrentLeaderBoard() {
+    this(64, 50);
+  }
+
+  public ConcurrentLeaderBoard(int stripeCount, long mergeIntervalMillis) {
+    this(stripeCount, mergeIntervalMillis, 256);
+  }
+
+  public ConcurrentLeaderBoard(int stripeCount, long mergeIntervalMillis, int maxPendingPerStripe) {
+    if (stripeCount <= 0 || mergeIntervalMillis <= 0 || maxPendingPerStripe <= 0) {
+      throw new IllegalArgumentException("stripeCount, mergeIntervalMillis and maxPendingPerStripe must be positive");
+    }
+    maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(2 * mergeIntervalMillis);
+    this.maxPendingPerStripe = maxPendingPerStripe;
+    stripes = new Stripe[Integer.highestOneBit(stripeCount * 2 - 1)];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+    merger = Executors.newSingleThreadScheduledExecutor((task) -> {
+      Thread thread = new Thread(task, "leaderboard-merger");
+      thread.setDaemon(true);
+      return thread;
+    });
+    merger.scheduleWithFixedDelay(this::flush, mergeIntervalMillis, mergeIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  // Buffers the delta; visible to queries after the next merge
+  public void addPoints(String name, int points) {
+    Stripe stripe = stripe(name);
+    while (!buffer(stripe, name, points)) {
+      // the stripe is full: wait for a running merge, or run one, to empty it
+      mergeLock.lock();
+      try {
+        if (isFull(stripe)) {
+          merge();
+        }
+      } finally {
+        mergeLock.unlock();
+      }
+    }
+    accepted.increment();
+    if (System.nanoTime() - lastSwapNanos > maxDelayNanos) {
+      // the merger is late: wait for a running merge, or run one, instead of buffering further ahead
+      mergeLock.lock();
+      try {
+        if (System.nanoTime() - lastSwapNanos > maxDelayNanos) {
+          merge();
+        }
+      } finally {
+        mergeLock.unlock();
+      }
+    }
+  }
+
+  // Adds the delta to the stripe unless that would buffer one player too many
+  private boolean buffer(Stripe stripe, String name, int points) {
+    stripe.lock.lock();
+    try {
+      if (stripe.deltas.size() >= maxPendingPerStripe && !stripe.deltas.containsKey(name)) {
+        return false;
+      }
+      stripe.deltas.merge(name, points, Integer::sum);
+      return true;
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  private boolean isFull(Stripe stripe) {
+    stripe.lock.lock();
+    try {
+      return stripe.deltas.size() >= maxPendingPerStripe;
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  // Removes the player and drops any points still buffered for it
+  public void removePlayer(String name) {
+    mergeLock.lock();
+    try {
+      Stripe stripe = stripe(name);
+      stripe.lock.lock();
+      try {
+        stripe.deltas.remove(name);
+      } finally {
+        stripe.lock.unlock();
+      }
+      boardLock.writeLock().lock();
+      try {
+        board.removePlayer(name);
+      } finally {
+        boardLock.writeLock().unlock();
+      }
+    } finally {
+      mergeLock.unlock();
+    }
+  }
+
+  /**
+   * Applies every delta buffered so far. Called by the merger; callers may call it to read their own writes.
+   */
+  public void flush() {
+    mergeLock.lock();
+    try {
+      merge();
+    } finally {
+      mergeLock.unlock();
+    }
+  }
+
+  // Swaps out every stripe's buffer and applies the deltas in one batch; caller holds mergeLock
+  private void merge() {
+    long swapNanos = System.nanoTime();
+    List<HashMap<String, Integer>> batches = new ArrayList<>(stripes.length);
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        if (!stripe.deltas.isEmpty()) {
+          batches.add(stripe.deltas);
+          stripe.deltas = new HashMap<>();
+        }
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    if (!batches.isEmpty()) {
+      boardLock.writeLock().lock();
+      try {
+        for (HashMap<String, Integer> batch : batches) {
+          batch.forEach(board::addPoints);
+          applied.add(batch.size());
+        }
+      } finally {
+        boardLock.writeLock().unlock();
+      }
+    }
+    // a delta buffered just after the previous swap waited until now
+    maxStalenessNanos.accumulateAndGet(System.nanoTime() - lastSwapNanos, Math::max);
+    lastSwapNanos = swapNanos;
+  }
+
+  public int getRank(String name) {
+    boardLock.readLock().lock();
+    try {
+      return board.getRank(name);
+    } finally {
+      boardLock.readLock().unlock();
+    }
+  }
+
+  public int getPlayerRank(String name) {
+    boardLock.readLock().lock();
+    try {
+      return board.getPlayerRank(name);
+    } finally {
+      boardLock.readLock().unlock();
+    }
+  }
+
+  // Player objects are copied, so the result does not change under later merges
+  public List<LeaderBoardSystem.Player> getTopPlayers(int n) {
+    return getPage(0, n);
+  }
+
+  public List<LeaderBoardSystem.Player> getPage(int offset, int limit) {
+    boardLock.readLock().lock();
+    try {
+      return copy(board.getPage(offset, limit));
+    } finally {
+      boardLock.readLock().unlock();
+    }
+  }
+
+  public List<LeaderBoardSystem.Player> getPlayersAround(String name, int above, int below) {
+    boardLock.readLock().lock();
+    try {
+      return copy(board.getPlayersAround(name, above, below));
+    } finally {
+      boardLock.readLock().unlock();
+    }
+  }
+
+  // addPoints calls per index update: how much coalescing saved
+  public double coalescingRatio() {
+    long updates = applied.sum();
+    return updates == 0 ? 1 : (double) accepted.sum() / updates;
+  }
+
+  public double maxObservedStalenessMillis() {
+    return maxStalenessNanos.get() / 1e6;
+  }
+
+  // Starts the staleness and coalescing statistics over, e.g. after a bulk load
+  void resetStatistics() {
+    maxStalenessNanos.set(0);
+    accepted.reset();
+    applied.reset();
+  }
+
+  // Stops the merger after a last flush; an interrupt while waiting for the merger is kept for the caller
+  @Override
+  public void close() {
+    merger.shutdown();
+    try {
+      merger.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  private Stripe stripe(String name) {
+    int h = name.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+  }
+
+  private static List<LeaderBoardSystem.Player> copy(List<LeaderBoardSystem.Player> players) {
+    List<LeaderBoardSystem.Player> copy = new ArrayList<>(players.size());
+    for (LeaderBoardSystem.Player player : players) {
+      copy.add(new LeaderBoardSystem.Player(player.name, player.score));
+    }
+    return copy;
+  }
+
+  /**
+   * Ingest throughput and rank-query latency: writer threads call addPoints on a skewed player population
+   * as fast as they can while one reader thread times getPlayerRank. The baseline is LeaderBoardSystem
+   * behind one ReentrantReadWriteLock, applying every call directly.
+   */
+  public static void main(String[] args) throws Exception {
+    try (ConcurrentLeaderBoard board = new ConcurrentLeaderBoard()) {
+      board.addPoints("Alice", 100);
+      board.addPoints("Bob", 200);
+      board.addPoints("Alice", 150);
+      board.flush();
+      System.out.println("Top Players: " + board.getTopPlayers(2)); // [Alice 250, Bob 200]
+      System.out.println("Rank: Bob: " + board.getPlayerRank("Bob")); // 2
+    }
+
+    int players = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    long millis = args.length > 1 ? Long.parseLong(args[1]) : 1_000;
+    System.out.printf("Available processors: %d%n", Runtime.getRuntime().availableProcessors());
+    System.out.println("writers  mode        ingest ops/s  rank p50 us  rank p99 us  max staleness ms  coalescing");
+    for (int writers = 1; writers <= 8; writers *= 2) {
+      LeaderBoardSystem plain = new LeaderBoardSystem();
+      ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+      run("locked", writers, players, millis, (name, points) -> {
+        lock.writeLock().lock();
+        try {
+          plain.addPoints(name, points);
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }, (name) -> {
+        lock.readLock().lock();
+        try {
+          return plain.getPlayerRank(name);
+        } finally {
+          lock.readLock().unlock();
+        }
+      }, null);
+      try (ConcurrentLeaderBoard coalescing = new ConcurrentLeaderBoard()) {
+        run("coalescing", writers, players, millis, coalescing::addPoints, coalescing::getPlayerRank, coalescing);
+      }
+    }
+  }
+
+  private interface Scorer {
+    void addPoints(String name, int points);
+  }
+
+  private interface Ranker {
+    int rank(String name);
+  }
+
+  private static void run(String mode, int writers, int players, long millis, Scorer scorer, Ranker ranker,
+      ConcurrentLeaderBoard coalescing) throws Exception {
+    String[] names = new String[players];
+    for (int i = 0; i < players; i++) {
+      names[i] = "player-" + i;
+      scorer.addPoints(names[i], i % 1_000);
+    }
+    if (coalescing != null) {
+      coalescing.flush();
+      coalescing.resetStatistics();
+    }
+    AtomicBoolean stop = new AtomicBoolean();
+    LongAdder ingested = new LongAdder();
+    ExecutorService pool = Executors.newFixedThreadPool(writers + 1);
+    for (int t = 0; t < writers; t++) {
+      long seed = t;
+      pool.submit(() -> {
+        SplittableRandom random = new SplittableRandom(seed);
+        long count = 0;
+        while (!stop.get()) {
+          // a quarter of the traffic goes to the 1% most active players
+          int player = random.nextInt(4) == 0 ? random.nextInt(players / 100) : random.nextInt(players);
+          scorer.addPoints(names[player], 1 + random.nextInt(10));
+          count++;
+        }
+        ingested.add(count);
+      });
+    }
+    Future<long[]> latencies = pool.submit(() -> {
+      SplittableRandom random = new SplittableRandom(99);
+      long[] samples = new long[1 << 20];
+      int count = 0;
+      while (!stop.get() && count < samples.length) {
+        long start = System.nanoTime();
+        ranker.rank(names[random.nextInt(players)]);
+        samples[count++] = System.nanoTime() - start;
+      }
+      return Arrays.copyOf(samples, count);
+    });
+    Thread.sleep(millis);
+    stop.set(true);
+    long[] samples = latencies.get();
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.MINUTES);
+    Arrays.sort(samples);
+    System.out.printf("%7d  %-10s  %12.0f  %11.1f  %11.1f  %16s  %10s%n", writers, mode,
+        ingested.sum() * 1000.0 / millis,
+        samples.length == 0 ? 0 : samples[samples.length / 2] / 1e3,
+        samples.length == 0 ? 0 : samples[(int) (samples.length * 0.99)] / 1e3,
+        coalescing == null ? "0" : String.format("%.1f", coalescing.maxObservedStalenessMillis()),
+        coalescing == null ? "-" : String.format("%.1fx", coalescing.coalescingRatio()));
+  }
+}
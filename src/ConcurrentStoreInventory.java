@@ -0,0 +1,437 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe StoreInventorySystem for read-mostly use: many request threads query while a pricing thread
+ * writes. Readers never block and never see a half-applied change.
+ * <p>
+ * The whole inventory is one immutable Snapshot (a persistent AVL tree price -> sorted ids and another
+ * id -> price) published through a volatile field. Writers are serialized; each one copies the O(log N)
+ * tree nodes on the path it changes, shares the rest with the previous version and publishes the new
+ * root with a single volatile write. A reader reads the field once and works on that version for as long
+ * as it likes, so every answer, including multi-step ones, is a consistent point-in-time view.
+ * <p>
+ * Results are immutable copies, never live views: Item objects are created per result and can be kept
+ * or handed to other threads.
+ * <p>
+ * Summary of Time Complexities:
+ * O(log N): getItemPrice, cheapest / most expensive / neighbour lookups (+ K for the items returned).
+ * O(log N + G): addItem, removeItem, where G is the number of items sharing the price (the group's id
+ * array is copied).
+ * O(log N + K): range queries reporting K items.
+ */
+public class ConcurrentStoreInventory {
+
+  /**
+   * One immutable version of the inventory. Obtain it with snapshot() to run several queries against the
+   * same state.
+   */
+  static final class Snapshot {
+    final long version;
+    final int size;
+    private final PersistentIntTree.Node<int[]> itemsByPrice; // price -> ids in increasing order
+    private final PersistentIntTree.Node<Integer> itemsById; // id -> price
+
+    private Snapshot(long version, int size, PersistentIntTree.Node<int[]> itemsByPrice,
+        PersistentIntTree.Node<Integer> itemsById) {
+      this.version = version;
+      this.size = size;
+      this.itemsByPrice = itemsByPrice;
+      this.itemsById = itemsById;
+    }
+
+    int getItemPrice(int id) {
+      Integer price = PersistentIntTree.get(itemsById, id);
+      return price == null ? -1 : price;
+    }
+
+    Set<StoreInventorySystem.Item> getLeastExpensiveItem() {
+      return items(PersistentIntTree.first(itemsByPrice));
+    }
+
+    Set<StoreInventorySystem.Item> getMostExpensiveItem() {
+      return items(PersistentIntTree.last(itemsByPrice));
+    }
+
+    // Price groups within [start, end], in increasing price order
+    Map<Integer, Set<StoreInventorySystem.Item>> getItemsInPriceRange(int start, int end) {
+      if (start > end) {
+        return Map.of();
+      }
+      Map<Integer, Set<StoreInventorySystem.Item>> range = new LinkedHashMap<>();
+      PersistentIntTree.forEachInRange(itemsByPrice, start, end, (price, ids) -> {
+        range.put(price, items(price, ids));
+        return true;
+      });
+      return Collections.unmodifiableMap(range);
+    }
+
+    // Number of items priced within [start, end], without building the result
+    int countItemsInPriceRange(int start, int end) {
+      int[] count = new int[1];
+      if (start <= end) {
+        PersistentIntTree.forEachInRange(itemsByPrice, start, end, (price, ids) -> {
+          count[0] += ids.length;
+          return true;
+        });
+      }
+      return count[0];
+    }
+
+    Set<StoreInventorySystem.Item> getItemJustCheaperThan(int id) {
+      Integer price = PersistentIntTree.get(itemsById, id);
+      return price == null ? Set.of() : items(PersistentIntTree.lower(itemsByPrice, price));
+    }
+
+    Set<StoreInventorySystem.Item> getItemJustMoreExpensiveThan(int id) {
+      Integer price = PersistentIntTree.get(itemsById, id);
+      return price == null ? Set.of() : items(PersistentIntTree.higher(itemsByPrice, price));
+    }
+
+    int getNextHigherPrice(int id) {
+      Integer price = PersistentIntTree.get(itemsById, id);
+      if (price == null) {
+        return -1;
+      }
+      PersistentIntTree.Node<int[]> higher = PersistentIntTree.higher(itemsByPrice, price);
+      return higher == null ? -1 : higher.key;
+    }
+
+    Map<Integer, Set<StoreInventorySystem.Item>> getAllItemsCheaperThan(int id) {
+      Integer price = PersistentIntTree.get(itemsById, id);
+      return price == null || price == Integer.MIN_VALUE ? Map.of()
+          : getItemsInPriceRange(Integer.MIN_VALUE, price - 1);
+    }
+
+    Map<Integer, Set<StoreInventorySystem.Item>> getAllItemsMoreExpensiveThan(int id) {
+      Integer price = PersistentIntTree.get(itemsById, id);
+      return price == null || price == Integer.MAX_VALUE ? Map.of()
+          : getItemsInPriceRange(price + 1, Integer.MAX_VALUE);
+    }
+
+    private static Set<StoreInventorySystem.Item> items(PersistentIntTree.Node<int[]> group) {
+      return group == null ? Set.of() : items(group.key, group.value);
+    }
+
+    private static Set<StoreInventorySystem.Item> items(int price, int[] ids) {
+      Set<StoreInventorySystem.Item> items = new LinkedHashSet<>(ids.length * 2);
+      for (int id : ids) {
+        items.add(new StoreInventorySystem.Item(id, price));
+      }
+      return Collections.unmodifiableSet(items);
+    }
+  }
+
+  private volatile Snapshot current = new Snapshot(0, 0, null, null);
+
+  // The latest published version; never changes once returned
+  Snapshot snapshot() {
+    return current;
+  }
+
+  int size() {
+    return current.size;
+  }
+
+  synchronized void addItem(int id, int price) {
+    Snapshot base = current;
+    Integer previous = PersistentIntTree.get(base.itemsById, id);
+    if (previous != null && previous == price) {
+      return;
+    }
+    PersistentIntTree.Node<int[]> itemsByPrice = base.itemsByPrice;
+    if (previous != null) {
+      itemsByPrice = PersistentIntTree.update(itemsByPrice, previous, (ids) -> without(ids, id));
+    }
+    itemsByPrice = PersistentIntTree.update(itemsByPrice, price, (ids) -> with(ids, id));
+    current = new Snapshot(base.version + 1, previous == null ? base.size + 1 : base.size, itemsByPrice,
+        PersistentIntTree.put(base.itemsById, id, price));
+  }
+
+  /**
+   * Applies all changes as one version: readers see either none or all of them.
+   */
+  synchronized void addItems(int[] ids, int[] prices) {
+    if (ids.length != prices.length) {
+      throw new IllegalArgumentException("ids and prices must have the same length");
+    }
+    Snapshot base = current;
+    PersistentIntTree.Node<int[]> itemsByPrice = base.itemsByPrice;
+    PersistentIntTree.Node<Integer> itemsById = base.itemsById;
+    int size = base.size;
+    for (int i = 0; i < ids.length; i++) {
+      int id = ids[i];
+      Integer previous = PersistentIntTree.get(itemsById, id);
+      if (previous != null && previous == prices[i]) {
+        continue;
+      }
+      if (previous != null) {
+        itemsByPrice = PersistentIntTree.update(itemsByPrice, previous, (group) -> without(group, id));
+      } else {
+        size++;
+      }
+      itemsByPrice = PersistentIntTree.update(itemsByPrice, prices[i], (group) -> with(group, id));
+      itemsById = PersistentIntTree.put(itemsById, id, prices[i]);
+    }
+    current = new Snapshot(base.version + 1, size, itemsByPrice, itemsById);
+  }
+
+  // Returns the removed item, or null
+  synchronized StoreInventorySystem.Item removeItem(int id) {
+    Snapshot base = current;
+    Integer price = PersistentIntTree.get(base.itemsById, id);
+    if (price == null) {
+      return null;
+    }
+    current = new Snapshot(base.version + 1, base.size - 1,
+        PersistentIntTree.update(base.itemsByPrice, price, (ids) -> without(ids, id)),
+        PersistentIntTree.remove(base.itemsById, id));
+    return new StoreInventorySystem.Item(id, price);
+  }
+
+  int getItemPrice(int id) {
+    return current.getItemPrice(id);
+  }
+
+  Set<StoreInventorySystem.Item> getLeastExpensiveItem() {
+    return current.getLeastExpensiveItem();
+  }
+
+  Set<StoreInventorySystem.Item> getMostExpensiveItem() {
+    return current.getMostExpensiveItem();
+  }
+
+  Map<Integer, Set<StoreInventorySystem.Item>> getItemsInPriceRange(int start, int end) {
+    return current.getItemsInPriceRange(start, end);
+  }
+
+  Set<StoreInventorySystem.Item> getItemJustCheaperThan(int id) {
+    return current.getItemJustCheaperThan(id);
+  }
+
+  Set<StoreInventorySystem.Item> getItemJustMoreExpensiveThan(int id) {
+    return current.getItemJustMoreExpensiveThan(id);
+  }
+
+  int getNextHigherPrice(int id) {
+    return current.getNextHigherPrice(id);
+  }
+
+  Map<Integer, Set<StoreInventorySystem.Item>> getAllItemsCheaperThan(int id) {
+    return current.getAllItemsCheaperThan(id);
+  }
+
+  Map<Integer, Set<StoreInventorySystem.Item>> getAllItemsMoreExpensiveThan(int id) {
+    return current.getAllItemsMoreExpensiveThan(id);
+  }
+
+  // Copy of a sorted id group with id inserted
+  private static int[] with(int[] ids, int id) {
+    if (ids == null) {
+      return new int[] {id};
+    }
+    int pos = -Arrays.binarySearch(ids, id) - 1;
+    int[] copy = new int[ids.length + 1];
+    System.arraycopy(ids, 0, copy, 0, pos);
+    copy[pos] = id;
+    System.arraycopy(ids, pos, copy, pos + 1, ids.length - pos);
+    return copy;
+  }
+
+  // Copy of a sorted id group without id, or null when it becomes empty
+  private static int[] without(int[] ids, int id) {
+    if (ids.length == 1) {
+      return null;
+    }
+    int pos = Arrays.binarySearch(ids, id);
+    int[] copy = new int[ids.length - 1];
+    System.arraycopy(ids, 0, copy, 0, pos);
+    System.arraycopy(ids, pos + 1, copy, pos, ids.length - pos - 1);
+    return copy;
+  }
+
+  /**
+   * Demo, consistency check and reader/writer scaling benchmark. One writer reprices items as fast as
+   * it can while 1..16 readers run a mix of range and neighbour queries; the baseline is
+   * StoreInventorySystem behind a ReentrantReadWriteLock, copying results under the read lock because
+   * its views are live.
+   */
+  public static void main(String[] args) throws Exception {
+    ConcurrentStoreInventory store = new ConcurrentStoreInventory();
+    store.addItem(1, 100);
+    store.addItem(2, 200);
+    store.addItem(3, 150);
+    store.addItem(4, 50);
+    Snapshot before = store.snapshot();
+    System.out.println("Removing item 3 from the inventory... " + store.removeItem(3));
+    System.out.println("Items with prices between 100 and 200: " + store.getItemsInPriceRange(100, 200)); // 1, 2
+    System.out.println("Same query on the earlier snapshot: " + before.getItemsInPriceRange(100, 200)); // 1, 3, 2
+    System.out.println("Most expensive item: " + store.getMostExpensiveItem()); // 2
+    System.out.println("Item just cheaper than item 2: " + store.getItemJustCheaperThan(2)); // 1
+    System.out.println("Next higher price after item 1: " + store.getNextHigherPrice(1)); // 200
+
+    consistencyCheck();
+
+    int items = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    long millis = args.length > 1 ? Long.parseLong(args[1]) : 1_000;
+    System.out.printf("Available processors: %d%n", Runtime.getRuntime().availableProcessors());
+    for (int readers : new int[] {1, 2, 4, 8, 16}) {
+      benchmark("snapshots", new SnapshotTarget(items), readers, items, millis);
+      benchmark("read-write lock", new LockedTarget(items), readers, items, millis);
+    }
+  }
+
+  // Every reprice keeps the item count; a reader that ever sees a different count saw a torn update
+  private static void consistencyCheck() throws Exception {
+    int items = 1_000;
+    ConcurrentStoreInventory store = new ConcurrentStoreInventory();
+    for (int id = 0; id < items; id++) {
+      store.addItem(id, 1 + id % 100);
+    }
+    StopFlag stop = new StopFlag();
+    Thread writer = new Thread(() -> {
+      SplittableRandom random = new SplittableRandom(1);
+      while (!stop.value) {
+        store.addItem(random.nextInt(items), 1 + random.nextInt(100));
+      }
+    });
+    writer.start();
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<Long>> checks = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      checks.add(pool.submit(() -> {
+        long lastVersion = -1;
+        long reads = 0;
+        for (int i = 0; i < 20_000; i++) {
+          Snapshot snapshot = store.snapshot();
+          if (snapshot.version < lastVersion) {
+            throw new AssertionError("versions went backwards");
+          }
+          lastVersion = snapshot.version;
+          int count = snapshot.countItemsInPriceRange(1, 100);
+          if (count != items || snapshot.size != items) {
+            throw new AssertionError("torn snapshot: " + count + " items");
+          }
+          reads++;
+        }
+        return reads;
+      }));
+    }
+    long reads = 0;
+    for (Future<Long> check : checks) {
+      reads += check.get();
+    }
+    stop.value = true;
+    writer.join();
+    pool.shutdown();
+    System.out.printf("Consistency check: %d full-range reads during %d writes, all consistent%n",
+        reads, store.snapshot().version);
+  }
+
+  private static final class StopFlag {
+    volatile boolean value;
+  }
+
+  private interface Target {
+    void reprice(int id, int price);
+
+    long read(SplittableRandom random, int items);
+  }
+
+  private static final class SnapshotTarget implements Target {
+    final ConcurrentStoreInventory store = new ConcurrentStoreInventory();
+
+    SnapshotTarget(int items) {
+      for (int id = 0; id < items; id++) {
+        store.addItem(id, 1 + id / 2);
+      }
+    }
+
+    public void reprice(int id, int price) {
+      store.addItem(id, price);
+    }
+
+    public long read(SplittableRandom random, int items) {
+      int id = random.nextInt(items);
+      int low = 1 + random.nextInt(items / 2);
+      return store.getItemsInPriceRange(low, low + 20).size() + store.getItemJustCheaperThan(id).size()
+          + store.getNextHigherPrice(id);
+    }
+  }
+
+  private static final class LockedTarget implements Target {
+    final StoreInventorySystem store = new StoreInventorySystem();
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    LockedTarget(int items) {
+      for (int id = 0; id < items; id++) {
+        store.addItem(id, 1 + id / 2);
+      }
+    }
+
+    public void reprice(int id, int price) {
+      lock.writeLock().lock();
+      try {
+        store.addItem(id, price);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    public long read(SplittableRandom random, int items) {
+      int id = random.nextInt(items);
+      int low = 1 + random.nextInt(items / 2);
+      lock.readLock().lock();
+      try {
+        // the maps and sets are live, so they must be copied before the lock is released
+        Map<Integer, Set<StoreInventorySystem.Item>> range = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Set<StoreInventorySystem.Item>> group
+            : store.getItemsInPriceRange(low, low + 20).entrySet()) {
+          range.put(group.getKey(), new HashSet<>(group.getValue()));
+        }
+        return range.size() + new HashSet<>(store.getItemJustCheaperThan(id)).size()
+            + store.getNextHigherPrice(id);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+  }
+
+  private static void benchmark(String name, Target target, int readers, int items, long millis)
+      throws Exception {
+    StopFlag stop = new StopFlag();
+    LongAdder reads = new LongAdder();
+    long[] writes = new long[1];
+    Thread writer = new Thread(() -> {
+      SplittableRandom random = new SplittableRandom(7);
+      long count = 0;
+      while (!stop.value) {
+        target.reprice(random.nextInt(items), 1 + random.nextInt(items / 2));
+        count++;
+      }
+      writes[0] = count;
+    });
+    ExecutorService pool = Executors.newFixedThreadPool(readers);
+    long[] checksum = new long[readers];
+    for (int t = 0; t < readers; t++) {
+      int reader = t;
+      pool.submit(() -> {
+        SplittableRandom random = new SplittableRandom(100 + reader);
+        while (!stop.value) {
+          checksum[reader] += target.read(random, items);
+          reads.increment();
+        }
+      });
+    }
+    writer.start();
+    Thread.sleep(millis);
+    stop.value = true;
+    writer.join();
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.MINUTES);
+    System.out.printf("%-15s readers=%2d: %,10.0f reads/s %,10.0f writes/s%n", name, readers,
+        reads.sum() * 1000.0 / millis, writes[0] * 1000.0 / millis);
+  }
+}
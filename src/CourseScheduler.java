@@ -2,32 +2,465 @@ import java.util.*;
 
 public class CourseScheduler {
 
-  // TreeMap to store courses with their start time as the key and end time as the value
-  private final TreeMap<Integer, Integer> courseSchedule = new TreeMap<>();
+  // Allocation-free callback over (start, end) pairs; return false to stop early
+  interface CourseVisitor {
+    boolean visit(int start, int end);
+  }
+
+  // Returned by the paged range read when the range is exhausted
+  static final long END_OF_RANGE = Long.MIN_VALUE;
+
+  /**
+   * AVL tree over the courses keyed by start time. Every node keeps the free gap between the previous
+   * course's end and its own start, and the maximum gap of its subtree, so the first gap of at least
+   * a given length after a given course is found in O(log N) instead of walking the schedule.
+   * It is the scheduler's only index: overlap checks and neighbour lookups use floor / ceiling / lower /
+   * higher here, so every course is stored once.
+   */
+  static class GapIndex {
+
+    static class Node {
+      final int start;
+      int end;
+      long gap; // start - end of the previous course, 0 for the first course
+      long maxGap;
+      int height = 1;
+      Node left;
+      Node right;
+
+      Node(int start, int end, long gap) {
+        this.start = start;
+        this.end = end;
+        this.gap = gap;
+        this.maxGap = gap;
+      }
+    }
+
+    private Node root;
+
+    void put(int start, int end, long gap) {
+      root = put(root, start, end, gap);
+    }
+
+    void setGap(int start, long gap) {
+      root = setGap(root, start, gap);
+    }
+
+    void remove(int start) {
+      root = remove(root, start);
+    }
+
+    // Last course starting at or before key, or null
+    Node floor(int key) {
+      return below(key, true);
+    }
+
+    // Last course starting before key, or null
+    Node lower(int key) {
+      return below(key, false);
+    }
+
+    // First course starting at or after key, or null
+    Node ceiling(int key) {
+      return above(key, true);
+    }
+
+    // First course starting after key, or null
+    Node higher(int key) {
+      return above(key, false);
+    }
+
+    Node last() {
+      Node node = root;
+      while (node != null && node.right != null) {
+        node = node.right;
+      }
+      return node;
+    }
+
+    private Node below(int key, boolean inclusive) {
+      Node found = null;
+      Node node = root;
+      while (node != null) {
+        if (node.start < key || (inclusive && node.start == key)) {
+          found = node;
+          node = node.right;
+        } else {
+          node = node.left;
+        }
+      }
+      return found;
+    }
+
+    private Node above(int key, boolean inclusive) {
+      Node found = null;
+      Node node = root;
+      while (node != null) {
+        if (node.start > key || (inclusive && node.start == key)) {
+          found = node;
+          node = node.left;
+        } else {
+          node = node.right;
+        }
+      }
+      return found;
+    }
+
+    // First course starting after key whose gap before it is at least length, or null
+    Node firstGapAtLeast(int key, long length) {
+      return firstGapAtLeast(root, key, length);
+    }
+
+    // In-order walk of the courses starting within [from, to], pruned to the two boundary paths
+    boolean forEachInRange(int from, int to, CourseVisitor visitor) {
+      return forEachInRange(root, from, to, visitor);
+    }
+
+    private boolean forEachInRange(Node node, int from, int to, CourseVisitor visitor) {
+      while (node != null) {
+        if (node.start > from && !forEachInRange(node.left, from, to, visitor)) {
+          return false;
+        }
+        if (node.start >= from && node.start <= to && !visitor.visit(node.start, node.end)) {
+          return false;
+        }
+        if (node.start >= to) {
+          return true;
+        }
+        node = node.right;
+      }
+      return true;
+    }
+
+    private Node firstGapAtLeast(Node node, int key, long length) {
+      if (node == null || node.maxGap < length) {
+        return null;
+      }
+      if (node.start > key) {
+        Node found = firstGapAtLeast(node.left, key, length);
+        if (found != null) {
+          return found;
+        }
+        if (node.gap >= length) {
+          return node;
+        }
+      }
+      return firstGapAtLeast(node.right, key, length);
+    }
+
+    private Node put(Node node, int start, int end, long gap) {
+      if (node == null) {
+        return new Node(start, end, gap);
+      }
+      if (start < node.start) {
+        node.left = put(node.left, start, end, gap);
+      } else if (start > node.start) {
+        node.right = put(node.right, start, end, gap);
+      } else {
+        node.end = end;
+        node.gap = gap;
+      }
+      return balance(node);
+    }
+
+    private Node setGap(Node node, int start, long gap) {
+      if (node == null) {
+        return null;
+      }
+      if (start < node.start) {
+        node.left = setGap(node.left, start, gap);
+      } else if (start > node.start) {
+        node.right = setGap(node.right, start, gap);
+      } else {
+        node.gap = gap;
+      }
+      update(node);
+      return node;
+    }
+
+    private Node remove(Node node, int start) {
+      if (node == null) {
+        return null;
+      }
+      if (start < node.start) {
+        node.left = remove(node.left, start);
+      } else if (start > node.start) {
+        node.right = remove(node.right, start);
+      } else {
+        if (node.left == null) {
+          return node.right;
+        }
+        if (node.right == null) {
+          return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+          successor = successor.left;
+        }
+        successor.right = removeMin(node.right);
+        successor.left = node.left;
+        node = successor;
+      }
+      return balance(node);
+    }
+
+    private Node removeMin(Node node) {
+      if (node.left == null) {
+        return node.right;
+      }
+      node.left = removeMin(node.left);
+      return balance(node);
+    }
+
+    private Node balance(Node node) {
+      update(node);
+      int factor = height(node.left) - height(node.right);
+      if (factor > 1) {
+        if (height(node.left.left) < height(node.left.right)) {
+          node.left = rotateLeft(node.left);
+        }
+        return rotateRight(node);
+      }
+      if (factor < -1) {
+        if (height(node.right.right) < height(node.right.left)) {
+          node.right = rotateRight(node.right);
+        }
+        return rotateLeft(node);
+      }
+      return node;
+    }
+
+    private Node rotateRight(Node node) {
+      Node pivot = node.left;
+      node.left = pivot.right;
+      pivot.right = node;
+      update(node);
+      update(pivot);
+      return pivot;
+    }
+
+    private Node rotateLeft(Node node) {
+      Node pivot = node.right;
+      node.right = pivot.left;
+      pivot.left = node;
+      update(node);
+      update(pivot);
+      return pivot;
+    }
+
+    private static void update(Node node) {
+      node.height = 1 + Math.max(height(node.left), height(node.right));
+      long maxGap = node.gap;
+      if (node.left != null) {
+        maxGap = Math.max(maxGap, node.left.maxGap);
+      }
+      if (node.right != null) {
+        maxGap = Math.max(maxGap, node.right.maxGap);
+      }
+      node.maxGap = maxGap;
+    }
+
+    private static int height(Node node) {
+      return node == null ? 0 : node.height;
+    }
+  }
+
+  /**
+   * Forward cursor over the courses whose start is within a range, reading primitives straight from the
+   * gap index. The stack is allocated once, so reset() and next() never allocate; a cursor can be reused
+   * for every page. Adding or removing courses invalidates an open cursor.
+   */
+  final class CourseCursor {
+    private final GapIndex.Node[] stack = new GapIndex.Node[64]; // AVL height stays below 64
+    private int depth;
+    private int to;
+    private int start;
+    private int end;
+
+    // Positions the cursor before the first course starting at or after from; O(log N)
+    CourseCursor reset(int from, int to) {
+      this.to = to;
+      depth = 0;
+      GapIndex.Node node = gapIndex.root;
+      while (node != null) {
+        if (node.start >= from) {
+          stack[depth++] = node;
+          node = node.left;
+        } else {
+          node = node.right;
+        }
+      }
+      return this;
+    }
+
+    // Advances to the next course; O(1) amortized
+    boolean next() {
+      if (!hasMore()) {
+        depth = 0;
+        return false;
+      }
+      GapIndex.Node node = stack[--depth];
+      start = node.start;
+      end = node.end;
+      for (node = node.right; node != null; node = node.left) {
+        stack[depth++] = node;
+      }
+      return true;
+    }
+
+    boolean hasMore() {
+      return depth > 0 && stack[depth - 1].start <= to;
+    }
+
+    int start() {
+      return start;
+    }
+
+    int end() {
+      return end;
+    }
+
+    // Key to resume from with reset(continuationKey, to): the start of the next course not yet returned
+    long continuationKey() {
+      return hasMore() ? stack[depth - 1].start : END_OF_RANGE;
+    }
+  }
+
+  // Courses by start time, augmented with the free gap before each course
+  private final GapIndex gapIndex = new GapIndex();
 
   // Method to add a course to the system
   public boolean addCourse(int startTime, int endTime) {
     // Check if the new course overlaps with existing courses
-    Map.Entry<Integer, Integer> floorEntry = courseSchedule.floorEntry(startTime);
-    Map.Entry<Integer, Integer> ceilingEntry = courseSchedule.ceilingEntry(startTime);
+    GapIndex.Node floor = gapIndex.floor(startTime);
+    GapIndex.Node ceiling = gapIndex.ceiling(startTime);
 
     // Check for overlap with the course before or after
-    if (floorEntry != null && floorEntry.getValue() > startTime) {
+    if (floor != null && floor.end > startTime) {
       return false; // Overlap with an existing course
     }
 
-    if (ceilingEntry != null && ceilingEntry.getKey() < endTime) {
+    if (ceiling != null && ceiling.start < endTime) {
       return false; // Overlap with an existing course
     }
 
     // No overlap, so add the course
-    courseSchedule.put(startTime, endTime);
+    GapIndex.Node previous = gapIndex.lower(startTime);
+    gapIndex.put(startTime, endTime, previous == null ? 0 : (long) startTime - previous.end);
+    GapIndex.Node next = gapIndex.higher(startTime);
+    if (next != null) {
+      gapIndex.setGap(next.start, (long) next.start - endTime);
+    }
     return true; // Successfully added
   }
 
+  // Method to remove the course starting at startTime: O(log N)
+  public boolean removeCourse(int startTime) {
+    GapIndex.Node course = gapIndex.floor(startTime);
+    if (course == null || course.start != startTime) {
+      return false;
+    }
+    gapIndex.remove(startTime);
+    GapIndex.Node next = gapIndex.higher(startTime);
+    if (next != null) {
+      GapIndex.Node previous = gapIndex.lower(startTime);
+      gapIndex.setGap(next.start, previous == null ? 0 : (long) next.start - previous.end);
+    }
+    return true;
+  }
+
+  /**
+   * Method to find the earliest start time at or after the given time where a free slot of at least
+   * length fits: O(log N). The slot either starts right at after (or at the end of the course running
+   * at that time), or it is the first large enough gap further on, found through the gap index.
+   * After the last course the schedule is free forever.
+   *
+   * @param after  - earliest acceptable start of the slot
+   * @param length - required length of the slot, must be positive
+   * @return - start time of the slot
+   */
+  public int findEarliestSlot(int after, int length) {
+    List<Map.Entry<Integer, Integer>> slots = findEarliestSlots(after, length, 1);
+    return slots.get(0).getKey();
+  }
+
+  /**
+   * Method to find the first k free slots of at least length at or after the given time: O(k log N).
+   * Each slot is returned as (start, end) of the whole free gap; the open slot after the last course
+   * ends at Integer.MAX_VALUE and is always the final slot.
+   */
+  public List<Map.Entry<Integer, Integer>> findEarliestSlots(int after, int length, int k) {
+    if (length <= 0 || k <= 0) {
+      throw new IllegalArgumentException("length and k must be positive");
+    }
+    List<Map.Entry<Integer, Integer>> slots = new ArrayList<>();
+
+    // The gap that contains after, trimmed to start at after
+    GapIndex.Node running = gapIndex.floor(after);
+    int slotStart = running != null && running.end > after ? running.end : after;
+    GapIndex.Node next = gapIndex.ceiling(slotStart);
+    if (next == null) {
+      slots.add(Map.entry(slotStart, Integer.MAX_VALUE));
+      return slots;
+    }
+    if ((long) next.start - slotStart >= length) {
+      slots.add(Map.entry(slotStart, next.start));
+    }
+
+    // Later gaps, each found in O(log N) from the course that closed the previous one
+    int key = next.start;
+    while (slots.size() < k) {
+      GapIndex.Node gap = gapIndex.firstGapAtLeast(key, length);
+      if (gap == null) {
+        slots.add(Map.entry(gapIndex.last().end, Integer.MAX_VALUE));
+        break;
+      }
+      slots.add(Map.entry((int) (gap.start - gap.gap), gap.start));
+      key = gap.start;
+    }
+    return slots;
+  }
+
   // Method to get all courses within a specified time range
   public List<Map.Entry<Integer, Integer>> getCoursesInRange(int startTime, int endTime) {
-    return new ArrayList<>(courseSchedule.subMap(startTime, true, endTime, true).entrySet());
+    if (startTime > endTime) {
+      throw new IllegalArgumentException("startTime > endTime");
+    }
+    List<Map.Entry<Integer, Integer>> courses = new ArrayList<>();
+    gapIndex.forEachInRange(startTime, endTime, (start, end) -> courses.add(Map.entry(start, end)));
+    return courses;
+  }
+
+  // Method to visit all courses within a specified time range without copying them: O(log N + K)
+  public void forEachCourseInRange(int startTime, int endTime, CourseVisitor visitor) {
+    gapIndex.forEachInRange(startTime, endTime, visitor);
+  }
+
+  /**
+   * Method to read one page of a range: visits at most limit courses starting within
+   * [startTime, endTime] and returns the continuation key to pass as startTime for the next page,
+   * or END_OF_RANGE once the range is exhausted. Memory stays constant however wide the range is.
+   * Every call gets its own cursor, so pages of different ranges can be read interleaved or from
+   * inside a visitor.
+   */
+  public long forEachCourseInRange(int startTime, int endTime, int limit, CourseVisitor visitor) {
+    return forEachCourseInRange(new CourseCursor(), startTime, endTime, limit, visitor);
+  }
+
+  // Same page read through a caller-owned cursor, so a caller paging in a loop allocates nothing
+  public long forEachCourseInRange(CourseCursor cursor, int startTime, int endTime, int limit, CourseVisitor visitor) {
+    cursor.reset(startTime, endTime);
+    for (int visited = 0; visited < limit && cursor.next(); visited++) {
+      if (!visitor.visit(cursor.start(), cursor.end())) {
+        break;
+      }
+    }
+    return cursor.continuationKey();
+  }
+
+  // Method to open a reusable cursor over the courses within a specified time range
+  public CourseCursor openCursor(int startTime, int endTime) {
+    return new CourseCursor().reset(startTime, endTime);
   }
 
   // Method to check if a student can be enrolled in a course
@@ -53,8 +486,29 @@ public class CourseScheduler {
       System.out.println("Start: " + course.getKey() + ", End: " + course.getValue());
     }
 
+    // Same range without copying, then two courses per page
+    scheduler.forEachCourseInRange(9, 15, (start, end) -> {
+      System.out.println("Visited: " + start + "-" + end);
+      return true;
+    });
+    CourseCursor pages = scheduler.openCursor(9, 15);
+    long continuation = 9;
+    while (continuation != END_OF_RANGE) {
+      continuation = scheduler.forEachCourseInRange(pages, (int) continuation, 15, 2, (start, end) -> {
+        System.out.print("[" + start + ", " + end + "] ");
+        return true;
+      });
+      System.out.println(continuation == END_OF_RANGE ? "| done" : "| next page from " + continuation);
+    }
+
     // Check if a new course can be enrolled
     System.out.println(scheduler.canEnroll(12, 14)); // true (no overlap)
     System.out.println(scheduler.canEnroll(14, 15)); // false (overlaps with 13-15)
+
+    // Earliest free slots of at least 2 after time 8
+    System.out.println(scheduler.findEarliestSlot(8, 2)); // 15 (9-15 is fully booked)
+    System.out.println(scheduler.findEarliestSlots(0, 1, 3)); // [0=9, 15=2147483647]
+    scheduler.removeCourse(11);
+    System.out.println(scheduler.findEarliestSlots(10, 2, 2)); // [11=13, 15=2147483647]
   }
 }
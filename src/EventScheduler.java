@@ -1,4 +1,7 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 public class EventScheduler {
 
@@ -18,30 +21,364 @@ public class EventScheduler {
     }
   }
 
-  // List to store events
-  private final List<Event> events = new ArrayList<>();
+  // A repeating event: occurrence k covers [start + k * period, end + k * period) for every k
+  // whose occurrence starts at or before until
+  static class Recurrence {
+    final int start;
+    final int end;
+    final int period;
+    final int count;
 
-  // Method to add an event to the scheduler
-  private void addEvent(int start, int end) {
+    Recurrence(int start, int end, int period, int until) {
+      if (period <= 0 || until < start) {
+        throw new IllegalArgumentException("period must be positive and until must not be before start");
+      }
+      this.start = start;
+      this.end = end;
+      this.period = period;
+      long occurrences = ((long) until - start) / period + 1;
+      if (occurrences > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("more than " + Integer.MAX_VALUE + " occurrences");
+      }
+      this.count = (int) occurrences;
+      if ((long) end + (long) (count - 1) * period > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("last occurrence ends beyond the supported time range");
+      }
+    }
+
+    int lastEnd() {
+      return end + (count - 1) * period;
+    }
+
+    // Emits the occurrences with start < high && end > low, computed arithmetically: O(1) per occurrence
+    void forEachOccurrence(int low, int high, Consumer<Event> action) {
+      // start + k * period < high  <=>  k <= floor((high - start - 1) / period)
+      // end + k * period > low     <=>  k >= floor((low - end) / period) + 1
+      long first = Math.max(0, Math.floorDiv((long) low - end, period) + 1);
+      long last = Math.min(count - 1, Math.floorDiv((long) high - start - 1, period));
+      for (long k = first; k <= last; k++) {
+        action.accept(new Event((int) (start + k * period), (int) (end + k * period)));
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Recurrence)) {
+        return false;
+      }
+      Recurrence other = (Recurrence) o;
+      return start == other.start && end == other.end && period == other.period && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(start, end, period, count);
+    }
+
+    @Override
+    public String toString() {
+      return "[" + start + ", " + end + "] every " + period + " x" + count;
+    }
+  }
+
+  // Callback for batch queries; window is the index of the query window the event overlaps
+  interface OverlapConsumer {
+    void accept(int window, Event event);
+  }
+
+  // Batches with at least this many windows are swept in parallel on the common fork-join pool
+  private static final int PARALLEL_SWEEP_THRESHOLD = 8192;
+
+  // Interval tree holding the events, augmented with the max end of every subtree
+  private final IntervalTree<Event> events = new IntervalTree<>();
+
+  // Periods above this have at most a handful of occurrences and are only indexed by span; below it,
+  // three shifted copies of a phase window stay within int range
+  private static final int MAX_PHASE_PERIOD = Integer.MAX_VALUE / 3;
+
+  /**
+   * Recurrence rules sharing one period. byPhase holds every rule as its occurrence phase interval
+   * [start mod period, start mod period + min(end - start, period)), so a window shorter than the period
+   * only visits the rules with an occurrence at that time of the cycle; bySpan holds every rule as
+   * [start, lastEnd) for wider windows, where any rule whose span overlaps the window has an occurrence in it.
+   */
+  private static final class PeriodGroup {
+    final int period;
+    final IntervalTree<Recurrence> bySpan = new IntervalTree<>();
+    final IntervalTree<Recurrence> byPhase = new IntervalTree<>();
+
+    PeriodGroup(int period) {
+      this.period = period;
+    }
+
+    void add(Recurrence recurrence) {
+      bySpan.add(recurrence.start, recurrence.lastEnd(), recurrence);
+      if (period <= MAX_PHASE_PERIOD) {
+        byPhase.add(phaseStart(recurrence), phaseEnd(recurrence), recurrence);
+      }
+    }
+
+    boolean remove(Recurrence recurrence) {
+      if (!bySpan.remove(recurrence.start, recurrence.lastEnd(), recurrence)) {
+        return false;
+      }
+      if (period <= MAX_PHASE_PERIOD) {
+        byPhase.remove(phaseStart(recurrence), phaseEnd(recurrence), recurrence);
+      }
+      return true;
+    }
+
+    // Every rule whose occurrences may overlap [low, high), each exactly once
+    void forEachCandidate(int low, int high, Consumer<Recurrence> action) {
+      long length = (long) high - low;
+      if (length <= 0 || length >= period || period > MAX_PHASE_PERIOD) {
+        bySpan.forEachOverlap(low, high, action);
+        return;
+      }
+      // the window moved into the first cycle, and one cycle either side: phase intervals lie in
+      // [-period, 2 * period), so no other copy can meet them
+      int phase = Math.floorMod(low, period);
+      for (int copy = -1; copy <= 1; copy++) {
+        int copyLow = phase + copy * period;
+        int copyHigh = (int) (copyLow + length);
+        int shift = copy;
+        byPhase.forEachOverlap(copyLow, copyHigh, recurrence -> {
+          // a rule met by an earlier copy was already handed over
+          for (int earlier = -1; earlier < shift; earlier++) {
+            int earlierLow = phase + earlier * period;
+            if (phaseStart(recurrence) < earlierLow + length && phaseEnd(recurrence) > earlierLow) {
+              return;
+            }
+          }
+          action.accept(recurrence);
+        });
+      }
+    }
+
+    private int phaseStart(Recurrence recurrence) {
+      return Math.floorMod(recurrence.start, period);
+    }
+
+    // Occurrences lasting a whole period or longer cover every phase
+    private int phaseEnd(Recurrence recurrence) {
+      long duration = Math.max(-period, Math.min((long) recurrence.end - recurrence.start, period));
+      return (int) (phaseStart(recurrence) + duration);
+    }
+  }
+
+  // Recurrence rules, one entry per rule, grouped by period
+  private final Map<Integer, PeriodGroup> recurrences = new HashMap<>();
+
+  // Method to add an event to the scheduler: O(log N)
+  void addEvent(int start, int end) {
     Event newEvent = new Event(start, end);
-    events.add(newEvent);
+    events.add(start, end, newEvent);
+  }
+
+  // Method to remove one event with the given start and end: O(log N)
+  private boolean removeEvent(int start, int end) {
+    return events.remove(start, end) != null;
+  }
+
+  // Method to add a repeating event stored as a single rule instead of one event per occurrence: O(log R)
+  private void addRecurringEvent(int start, int end, int period, int until) {
+    Recurrence recurrence = new Recurrence(start, end, period, until);
+    recurrences.computeIfAbsent(period, PeriodGroup::new).add(recurrence);
+  }
+
+  // Method to remove a rule added with the same arguments: O(log R)
+  private boolean removeRecurringEvent(int start, int end, int period, int until) {
+    Recurrence recurrence = new Recurrence(start, end, period, until);
+    PeriodGroup group = recurrences.get(period);
+    if (group == null || !group.remove(recurrence)) {
+      return false;
+    }
+    if (group.bySpan.size() == 0) {
+      recurrences.remove(period);
+    }
+    return true;
   }
 
-  // Method to find overlapping events
-  private List<Event> findOverlappingEvents(int low, int high) {
+  /**
+   * Method to find overlapping events, results ordered by start.
+   * Single events: the IntervalTree overlap query, O(log N + K log(N / K)).
+   * Rules: O(log R) per distinct period plus O(1) per candidate rule, and O(1) per occurrence. A window
+   * shorter than the period only meets the rules with an occurrence at that time of the cycle (rules
+   * that have not started or have already ended there still count); a wider window meets the rules whose
+   * span overlaps it, and each of those has an occurrence in it.
+   */
+  List<Event> findOverlappingEvents(int low, int high) {
     List<Event> overlappingEvents = new ArrayList<>();
 
-    // Iterate through all events and check if they overlap with the given range [low, high]
-    for (Event event : events) {
-      // If the event overlaps with the given range
-      if (event.start < high && event.end > low) {
-        overlappingEvents.add(event);
-      }
+    // The tree only visits subtrees that can hold an event with start < high && end > low
+    events.forEachOverlap(low, high, overlappingEvents::add);
+
+    int single = overlappingEvents.size();
+    forEachOccurrence(low, high, overlappingEvents::add);
+    if (overlappingEvents.size() > single) {
+      // same order a fully expanded tree would report: sorted runs, so this is a cheap merge
+      overlappingEvents.sort(BY_START_THEN_END);
     }
 
     return overlappingEvents;
   }
 
+  private static final Comparator<Event> BY_START_THEN_END =
+      Comparator.comparingInt((Event e) -> e.start).thenComparingInt(e -> e.end);
+
+  // Expands only the occurrences inside the window, for the candidate rules of every period
+  private void forEachOccurrence(int low, int high, Consumer<Event> action) {
+    for (PeriodGroup group : recurrences.values()) {
+      group.forEachCandidate(low, high, recurrence -> recurrence.forEachOccurrence(low, high, action));
+    }
+  }
+
+  // Method to find overlapping events for many windows [lows[i], highs[i]] at once, one list per window
+  private List<List<Event>> findOverlappingEvents(int[] lows, int[] highs) {
+    List<List<Event>> results = new ArrayList<>(lows.length);
+    for (int i = 0; i < lows.length; i++) {
+      results.add(new ArrayList<>());
+    }
+    // every window is answered by exactly one sweep task, so the per-window lists need no locking
+    forEachOverlappingEvent(lows, highs, (window, event) -> results.get(window).add(event));
+    return results;
+  }
+
+  /**
+   * Streams every (window, event) overlap without materializing the result set.
+   * Events and windows are sorted once and answered in a single sweep over increasing low:
+   * an event either starts inside [low, high) (a contiguous run of the start-sorted events)
+   * or started before low and is still running, which the sweep keeps in a min-heap by end
+   * that only ever expires events as low grows. Occurrences of recurring events are expanded per
+   * window from the rule index. Large batches are split into contiguous runs of windows, each swept
+   * by its own fork-join task; the consumer must then be thread-safe, though all calls for one
+   * window come from the same task. Order within a window is unspecified.
+   */
+  private void forEachOverlappingEvent(int[] lows, int[] highs, OverlapConsumer consumer) {
+    if (lows.length != highs.length) {
+      throw new IllegalArgumentException("lows and highs must have the same length");
+    }
+    Event[] byStart = new Event[events.size()];
+    int[] index = {0};
+    events.forEach(event -> byStart[index[0]++] = event); // already ordered by start
+    int[] starts = new int[byStart.length];
+    for (int i = 0; i < byStart.length; i++) {
+      starts[i] = byStart[i].start;
+    }
+
+    // sort window indexes by low without boxing: low in the high bits, index in the low bits
+    long[] packed = new long[lows.length];
+    for (int i = 0; i < lows.length; i++) {
+      packed[i] = ((long) lows[i] << 32) | i;
+    }
+    Arrays.sort(packed);
+    int[] order = new int[packed.length];
+    for (int i = 0; i < packed.length; i++) {
+      order[i] = (int) packed[i];
+    }
+
+    SweepTask sweep = new SweepTask(byStart, starts, lows, highs, order, 0, order.length, consumer);
+    if (order.length < PARALLEL_SWEEP_THRESHOLD) {
+      sweep.sweep();
+    } else {
+      ForkJoinPool.commonPool().invoke(sweep);
+    }
+  }
+
+  private final class SweepTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Event[] byStart;
+    private final int[] starts;
+    private final int[] lows;
+    private final int[] highs;
+    private final int[] order;
+    private final int from;
+    private final int to;
+    private final OverlapConsumer consumer;
+
+    SweepTask(Event[] byStart, int[] starts, int[] lows, int[] highs, int[] order, int from, int to,
+              OverlapConsumer consumer) {
+      this.byStart = byStart;
+      this.starts = starts;
+      this.lows = lows;
+      this.highs = highs;
+      this.order = order;
+      this.from = from;
+      this.to = to;
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_SWEEP_THRESHOLD) {
+        sweep();
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new SweepTask(byStart, starts, lows, highs, order, from, mid, consumer),
+          new SweepTask(byStart, starts, lows, highs, order, mid, to, consumer));
+    }
+
+    // Sweeps windows order[from..to) in increasing low
+    void sweep() {
+      if (from >= to) {
+        return;
+      }
+      int firstLow = lows[order[from]];
+      PriorityQueue<Event> running = new PriorityQueue<>(Comparator.comparingInt((Event e) -> e.end));
+      // seed with the events that started before this run's first low and are still running
+      events.forEachOverlap(firstLow, firstLow, running::add);
+      int next = lowerBound(starts, firstLow);
+
+      for (int i = from; i < to; i++) {
+        int window = order[i];
+        int low = lows[window];
+        int high = highs[window];
+
+        while (next < starts.length && starts[next] < low) {
+          Event event = byStart[next++];
+          if (event.end > low) {
+            running.add(event);
+          }
+        }
+        while (!running.isEmpty() && running.peek().end <= low) {
+          running.poll();
+        }
+
+        // started before low and ends after it
+        for (Event event : running) {
+          if (event.start < high) {
+            consumer.accept(window, event);
+          }
+        }
+        // starts inside [low, high)
+        for (int j = next; j < starts.length && starts[j] < high; j++) {
+          if (byStart[j].end > low) {
+            consumer.accept(window, byStart[j]);
+          }
+        }
+        // occurrences of recurring events
+        forEachOccurrence(low, high, event -> consumer.accept(window, event));
+      }
+    }
+  }
+
+  // First index whose value is >= key
+  private static int lowerBound(int[] sorted, int key) {
+    int lo = 0;
+    int hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (sorted[mid] < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
   public static void main(String[] args) {
     // Create an instance of the EventScheduler
     EventScheduler scheduler = new EventScheduler();
@@ -57,5 +394,85 @@ public class EventScheduler {
 
     // Output the overlapping events
     overlapping.forEach(System.out::println);
+
+    // Remove Event 2 and query again
+    scheduler.removeEvent(5, 12);
+    System.out.println("After removing [5, 12]: " + scheduler.findOverlappingEvents(6, 16));
+
+    // A daily one-hour event from 100 to 500, stored as a single rule
+    scheduler.addRecurringEvent(100, 124, 100, 500);
+    System.out.println("Occurrences in [250, 420]: " + scheduler.findOverlappingEvents(250, 420));
+    scheduler.removeRecurringEvent(100, 124, 100, 500);
+
+    // Batch query for the windows [0, 9], [11, 13] and [19, 30]
+    List<List<Event>> perWindow = scheduler.findOverlappingEvents(new int[]{0, 11, 19}, new int[]{9, 13, 30});
+    System.out.println("Batch: " + perWindow);
+
+    checkRecurrencesAgainstExpansion();
+    recurrenceBenchmark();
+  }
+
+  // Random rules, removals and windows; every query compared with the same rules fully expanded
+  private static void checkRecurrencesAgainstExpansion() {
+    Random random = new Random(11);
+    for (int round = 0; round < 200; round++) {
+      EventScheduler rules = new EventScheduler();
+      EventScheduler expanded = new EventScheduler();
+      List<int[]> added = new ArrayList<>();
+      for (int op = 0; op < 60; op++) {
+        if (!added.isEmpty() && random.nextInt(5) == 0) {
+          int[] rule = added.remove(random.nextInt(added.size()));
+          rules.removeRecurringEvent(rule[0], rule[1], rule[2], rule[3]);
+          for (int t = rule[0]; t <= rule[3]; t += rule[2]) {
+            expanded.removeEvent(t, t + rule[1] - rule[0]);
+          }
+          continue;
+        }
+        int period = 1 + random.nextInt(random.nextBoolean() ? 10 : 200);
+        int start = random.nextInt(2_000) - 1_000;
+        int duration = random.nextInt(10) == 0 ? -random.nextInt(50) : random.nextInt(period * 2 + 1);
+        int until = start + random.nextInt(1_500);
+        rules.addRecurringEvent(start, start + duration, period, until);
+        for (int t = start; t <= until; t += period) {
+          expanded.addEvent(t, t + duration);
+        }
+        added.add(new int[]{start, start + duration, period, until});
+      }
+      for (int q = 0; q < 200; q++) {
+        int low = random.nextInt(3_000) - 1_200;
+        int high = low + random.nextInt(random.nextBoolean() ? 20 : 600) - 10;
+        if (!rules.findOverlappingEvents(low, high).toString().equals(expanded.findOverlappingEvents(low, high).toString())) {
+          throw new AssertionError("rule expansion differs from stored occurrences in [" + low + ", " + high + ")");
+        }
+      }
+    }
+    System.out.println("Recurring events matched full expansion over 40000 windows");
+  }
+
+  // 100k daily one-hour rules over a year, queried in an hour of the day none of them occupies
+  private static void recurrenceBenchmark() {
+    int minute = 60;
+    int day = 24 * 60 * minute;
+    EventScheduler scheduler = new EventScheduler();
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      int start = random.nextInt(30) * day + (8 + random.nextInt(10)) * 60 * minute; // 08:00 to 17:59
+      scheduler.addRecurringEvent(start, start + 60 * minute, day, start + 365 * day);
+    }
+    long found = 0;
+    long startNanos = System.nanoTime();
+    for (int q = 0; q < 10_000; q++) {
+      int low = (40 + random.nextInt(300)) * day + 3 * 60 * minute; // 03:00
+      found += scheduler.findOverlappingEvents(low, low + 60 * minute).size();
+    }
+    long quiet = (System.nanoTime() - startNanos) / 10_000;
+    startNanos = System.nanoTime();
+    for (int q = 0; q < 1_000; q++) {
+      int low = (40 + random.nextInt(300)) * day + 12 * 60 * minute; // noon
+      found += scheduler.findOverlappingEvents(low, low + minute).size();
+    }
+    long busy = (System.nanoTime() - startNanos) / 1_000;
+    System.out.printf("100000 daily rules: empty hour %d ns/query, one busy minute %d ns/query (checksum %d)%n",
+        quiet, busy, found);
   }
 }
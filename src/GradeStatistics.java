@@ -0,0 +1,199 @@
+import java.util.function.Supplier;
+
+/**
+ * Counting statistics over a bounded grade domain [minGrade, maxGrade]: a Fenwick (binary indexed) tree of
+ * student counts per grade, plus the plain per-grade counts.
+ * <p>
+ * add / remove: O(log G), G = maxGrade - minGrade + 1
+ * countBelow / countAtOrAbove / rank / percentileOf / gradeAtPercentile: O(log G)
+ * countAt: O(1)
+ * histogram: O(G) to build, then O(1) from the cache until the next add or remove
+ * <p>
+ * The owner keeps the instance to itself and hands out a View, so only the owner's add / remove calls,
+ * made alongside its own indexes, change the counts.
+ */
+class GradeStatistics {
+
+  final int minGrade;
+  final int maxGrade;
+  private final int[] tree; // 1-based Fenwick tree over grade - minGrade
+  private final int[] counts;
+  private int size;
+  private int cachedWidth;
+  private int[] cachedHistogram; // null once an update invalidates it
+
+  GradeStatistics(int minGrade, int maxGrade) {
+    if (minGrade > maxGrade) {
+      throw new IllegalArgumentException("minGrade must not exceed maxGrade");
+    }
+    if ((long) maxGrade - minGrade >= Integer.MAX_VALUE - 1) {
+      throw new IllegalArgumentException("grade domain too large");
+    }
+    this.minGrade = minGrade;
+    this.maxGrade = maxGrade;
+    this.counts = new int[maxGrade - minGrade + 1];
+    this.tree = new int[counts.length + 1];
+  }
+
+  boolean inDomain(int grade) {
+    return grade >= minGrade && grade <= maxGrade;
+  }
+
+  void add(int grade) {
+    update(slot(grade), 1);
+  }
+
+  void remove(int grade) {
+    int slot = slot(grade);
+    if (counts[slot] == 0) {
+      throw new IllegalArgumentException("no student with grade " + grade);
+    }
+    update(slot, -1);
+  }
+
+  int countAt(int grade) {
+    return inDomain(grade) ? counts[grade - minGrade] : 0;
+  }
+
+  // Students with a grade strictly below grade
+  int countBelow(int grade) {
+    if (grade <= minGrade) {
+      return 0;
+    }
+    return prefix(Math.min(grade, maxGrade + 1) - minGrade);
+  }
+
+  int countAtOrAbove(int grade) {
+    return size - countBelow(grade);
+  }
+
+  // 1 + the number of students with a strictly higher grade
+  int rank(int grade) {
+    return size - countBelow(grade) - countAt(grade) + 1;
+  }
+
+  // Share of the students graded at or below grade, in percent
+  double percentileOf(int grade) {
+    return size == 0 ? 0 : 100.0 * (countBelow(grade) + countAt(grade)) / size;
+  }
+
+  /**
+   * Nearest-rank percentile: the grade of the ceil(p / 100 * N)-th lowest student, found by descending the
+   * Fenwick tree. Returns minGrade - 1 when there are no students.
+   */
+  int gradeAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    if (size == 0) {
+      return minGrade - 1;
+    }
+    int target = Math.max(1, (int) Math.ceil(percentile / 100 * size));
+    // largest position whose prefix count is below target; the grade after it holds the target-th student
+    int position = 0;
+    for (int step = Integer.highestOneBit(counts.length); step > 0; step >>= 1) {
+      int next = position + step;
+      if (next <= counts.length && tree[next] < target) {
+        position = next;
+        target -= tree[next];
+      }
+    }
+    return minGrade + position;
+  }
+
+  /**
+   * Student counts per bucket of bucketWidth grades, starting at minGrade. The result is cached and shared
+   * until the next update, so callers must not modify it.
+   */
+  int[] histogram(int bucketWidth) {
+    if (bucketWidth <= 0) {
+      throw new IllegalArgumentException("bucketWidth must be positive");
+    }
+    if (cachedHistogram == null || cachedWidth != bucketWidth) {
+      int[] histogram = new int[(counts.length + bucketWidth - 1) / bucketWidth];
+      for (int i = 0; i < counts.length; i++) {
+        histogram[i / bucketWidth] += counts[i];
+      }
+      cachedHistogram = histogram;
+      cachedWidth = bucketWidth;
+    }
+    return cachedHistogram;
+  }
+
+  private int slot(int grade) {
+    if (!inDomain(grade)) {
+      throw new IllegalArgumentException("grade " + grade + " outside [" + minGrade + ", " + maxGrade + "]");
+    }
+    return grade - minGrade;
+  }
+
+  private void update(int slot, int delta) {
+    counts[slot] += delta;
+    size += delta;
+    cachedHistogram = null;
+    for (int i = slot + 1; i < tree.length; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  // Students in the first length slots
+  private int prefix(int length) {
+    int sum = 0;
+    for (int i = length; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Read-only access to the statistics the owner currently holds, looked up on every call, so a view stays
+   * valid when the owner rebuilds them. histogram returns a copy: O(G / bucketWidth) on top of the cache.
+   */
+  static final class View {
+    private final Supplier<GradeStatistics> statistics;
+
+    View(Supplier<GradeStatistics> statistics) {
+      this.statistics = statistics;
+    }
+
+    int minGrade() {
+      return statistics.get().minGrade;
+    }
+
+    int maxGrade() {
+      return statistics.get().maxGrade;
+    }
+
+    boolean inDomain(int grade) {
+      return statistics.get().inDomain(grade);
+    }
+
+    int countAt(int grade) {
+      return statistics.get().countAt(grade);
+    }
+
+    int countBelow(int grade) {
+      return statistics.get().countBelow(grade);
+    }
+
+    int countAtOrAbove(int grade) {
+      return statistics.get().countAtOrAbove(grade);
+    }
+
+    int rank(int grade) {
+      return statistics.get().rank(grade);
+    }
+
+    double percentileOf(int grade) {
+      return statistics.get().percentileOf(grade);
+    }
+
+    int gradeAtPercentile(double percentile) {
+      return statistics.get().gradeAtPercentile(percentile);
+    }
+
+    int[] histogram(int bucketWidth) {
+      return statistics.get().histogram(bucketWidth).clone();
+    }
+  }
+}
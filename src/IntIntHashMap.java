@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing int -> int hash map: two parallel int arrays with linear probing and backward-shift
+ * deletion, so there are no entry objects, no boxing and no tombstones. Key 0 marks a free slot in the
+ * arrays and is stored on the side.
+ * <p>
+ * get / put / remove: O(1) expected, load factor kept at or below 1/2.
+ */
+class IntIntHashMap {
+
+  private static final int FREE = 0;
+
+  private int[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+  private boolean hasFreeKey;
+  private int freeKeyValue;
+
+  IntIntHashMap() {
+    this(16);
+  }
+
+  IntIntHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+    keys = new int[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean containsKey(int key) {
+    if (key == FREE) {
+      return hasFreeKey;
+    }
+    return keys[slot(key)] == key;
+  }
+
+  int get(int key, int missing) {
+    if (key == FREE) {
+      return hasFreeKey ? freeKeyValue : missing;
+    }
+    int slot = slot(key);
+    return keys[slot] == key ? values[slot] : missing;
+  }
+
+  // Returns the previous value, or missing when the key was absent
+  int put(int key, int value, int missing) {
+    if (key == FREE) {
+      int previous = hasFreeKey ? freeKeyValue : missing;
+      if (!hasFreeKey) {
+        size++;
+      }
+      hasFreeKey = true;
+      freeKeyValue = value;
+      return previous;
+    }
+    int slot = slot(key);
+    if (keys[slot] == key) {
+      int previous = values[slot];
+      values[slot] = value;
+      return previous;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+    return missing;
+  }
+
+  // Returns the removed value, or missing when the key was absent
+  int remove(int key, int missing) {
+    if (key == FREE) {
+      if (!hasFreeKey) {
+        return missing;
+      }
+      hasFreeKey = false;
+      size--;
+      return freeKeyValue;
+    }
+    int slot = slot(key);
+    if (keys[slot] != key) {
+      return missing;
+    }
+    int removed = values[slot];
+    // shift later entries of the probe run back so lookups never need tombstones
+    int gap = slot;
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      int candidate = keys[next];
+      if (candidate == FREE) {
+        break;
+      }
+      int home = hash(candidate) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        keys[gap] = candidate;
+        values[gap] = values[next];
+        gap = next;
+      }
+    }
+    keys[gap] = FREE;
+    size--;
+    return removed;
+  }
+
+  // Slot holding key, or the free slot where it would go
+  private int slot(int key) {
+    int slot = hash(key) & mask;
+    while (keys[slot] != FREE && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new int[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  void clear() {
+    Arrays.fill(keys, FREE);
+    size = 0;
+    hasFreeKey = false;
+  }
+
+  private static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
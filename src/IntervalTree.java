@@ -0,0 +1,266 @@
+import java.util.function.Consumer;
+
+/**
+ * Augmented interval tree: an AVL tree ordered by (start, end) where every node also keeps
+ * the maximum end of its subtree. Intervals are half-open, so an interval overlaps a query
+ * window [low, high) when start < high && end > low.
+ * <p>
+ * Insertion: O(log N)
+ * Removal: O(log N)
+ * Overlap test (anyOverlap): O(log N)
+ * Overlap query: O(log N + K log(N / K)) for K reported intervals. The right side is skipped as
+ * soon as a node starts at or after high (everything to its right starts later), which leaves one
+ * search path plus subtrees that all start before high; inside those, a subtree is entered only when
+ * its maxEnd is > low, so it holds a result, and the visited nodes are the ancestors of the K results.
+ * Reaching O(log N + K) takes a priority search tree, whose removals cost O(log^2 N).
+ *
+ * @param <T> payload stored with every interval
+ */
+class IntervalTree<T> {
+
+  static class Node<T> {
+    final int start;
+    final int end;
+    final long seq; // insertion order, breaks ties between equal intervals
+    final T value;
+    Node<T> left;
+    Node<T> right;
+    int height = 1;
+    int maxEnd;
+
+    Node(int start, int end, long seq, T value) {
+      this.start = start;
+      this.end = end;
+      this.seq = seq;
+      this.value = value;
+      this.maxEnd = end;
+    }
+  }
+
+  private Node<T> root;
+  private int size;
+  private long nextSeq;
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Adds the interval [start, end) with its payload. Equal intervals are kept side by side.
+   */
+  void add(int start, int end, T value) {
+    root = insert(root, new Node<>(start, end, nextSeq++, value));
+    size++;
+  }
+
+  /**
+   * Removes one interval equal to [start, end) and returns its payload, or null when there is none.
+   */
+  T remove(int start, int end) {
+    Node<T> node = root;
+    while (node != null) {
+      int cmp = compare(start, end, node);
+      if (cmp == 0) {
+        root = delete(root, node);
+        size--;
+        return node.value;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return null;
+  }
+
+  /**
+   * Removes the interval [start, end) carrying exactly this payload (compared with equals).
+   */
+  boolean remove(int start, int end, T value) {
+    Node<T> node = find(root, start, end, value);
+    if (node == null) {
+      return false;
+    }
+    root = delete(root, node);
+    size--;
+    return true;
+  }
+
+  /**
+   * Reports every interval with start < high && end > low, in (start, end) order.
+   */
+  void forEachOverlap(int low, int high, Consumer<? super T> action) {
+    collect(root, low, high, action);
+  }
+
+  /**
+   * True when some interval has start < high && end > low; O(log N), one root-to-leaf path.
+   */
+  boolean anyOverlap(int low, int high) {
+    Node<T> node = root;
+    while (node != null && node.maxEnd > low) {
+      if (node.start >= high) {
+        node = node.left; // this node and its right subtree start too late
+      } else if (node.end > low || (node.left != null && node.left.maxEnd > low)) {
+        return true; // the left subtree starts no later than this node, so before high
+      } else {
+        node = node.right;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reports every interval in (start, end) order.
+   */
+  void forEach(Consumer<? super T> action) {
+    inOrder(root, action);
+  }
+
+  private void collect(Node<T> node, int low, int high, Consumer<? super T> action) {
+    while (node != null && node.maxEnd > low) {
+      collect(node.left, low, high, action);
+      if (node.start >= high) {
+        return; // this node and its right subtree start too late
+      }
+      if (node.end > low) {
+        action.accept(node.value);
+      }
+      node = node.right;
+    }
+  }
+
+  private void inOrder(Node<T> node, Consumer<? super T> action) {
+    while (node != null) {
+      inOrder(node.left, action);
+      action.accept(node.value);
+      node = node.right;
+    }
+  }
+
+  private Node<T> find(Node<T> node, int start, int end, T value) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = compare(start, end, node);
+    if (cmp < 0) {
+      return find(node.left, start, end, value);
+    }
+    if (cmp > 0) {
+      return find(node.right, start, end, value);
+    }
+    // equal intervals can sit on both sides after rotations
+    if (node.value == null ? value == null : node.value.equals(value)) {
+      return node;
+    }
+    Node<T> found = find(node.left, start, end, value);
+    return found != null ? found : find(node.right, start, end, value);
+  }
+
+  private static int compare(int start, int end, Node<?> node) {
+    int cmp = Integer.compare(start, node.start);
+    return cmp != 0 ? cmp : Integer.compare(end, node.end);
+  }
+
+  private static int compare(Node<?> a, Node<?> b) {
+    int cmp = compare(a.start, a.end, b);
+    return cmp != 0 ? cmp : Long.compare(a.seq, b.seq);
+  }
+
+  private Node<T> insert(Node<T> node, Node<T> added) {
+    if (node == null) {
+      return added;
+    }
+    if (compare(added, node) < 0) {
+      node.left = insert(node.left, added);
+    } else {
+      node.right = insert(node.right, added);
+    }
+    return balance(node);
+  }
+
+  // removes the exact node (identified by its full key including seq)
+  private Node<T> delete(Node<T> node, Node<T> target) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = compare(target, node);
+    if (cmp < 0) {
+      node.left = delete(node.left, target);
+    } else if (cmp > 0) {
+      node.right = delete(node.right, target);
+    } else {
+      if (node.left == null) {
+        return node.right;
+      }
+      if (node.right == null) {
+        return node.left;
+      }
+      Node<T> successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      successor.right = deleteMin(node.right);
+      successor.left = node.left;
+      node = successor;
+    }
+    return balance(node);
+  }
+
+  private Node<T> deleteMin(Node<T> node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = deleteMin(node.left);
+    return balance(node);
+  }
+
+  private Node<T> balance(Node<T> node) {
+    update(node);
+    int factor = height(node.left) - height(node.right);
+    if (factor > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (factor < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private Node<T> rotateRight(Node<T> node) {
+    Node<T> pivot = node.left;
+    node.left = pivot.right;
+    pivot.right = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  private Node<T> rotateLeft(Node<T> node) {
+    Node<T> pivot = node.right;
+    node.right = pivot.left;
+    pivot.left = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  private static void update(Node<?> node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    int maxEnd = node.end;
+    if (node.left != null) {
+      maxEnd = Math.max(maxEnd, node.left.maxEnd);
+    }
+    if (node.right != null) {
+      maxEnd = Math.max(maxEnd, node.right.maxEnd);
+    }
+    node.maxEnd = maxEnd;
+  }
+
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height;
+  }
+}
@@ -0,0 +1,347 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Price-range subscriptions for StoreInventorySystem. A subscriber registers a price range [low, high] and
+ * receives only the changes that touch it:
+ * <p>
+ * ENTER: an item is now priced inside the range and was not before (added, or repriced from outside).
+ * LEAVE: an item priced inside the range was removed or repriced to outside it.
+ * REPRICE: an item moved from one price to another, both inside the range.
+ * <p>
+ * Subscriptions live in an IntervalTree, so a change to one item finds the matching subscriptions with two
+ * stabbing queries (old price, new price) in O(log S + M) for S subscriptions and M matches instead of a
+ * scan over every subscriber.
+ * <p>
+ * Every subscription owns a bounded queue. The inventory thread blocks when a subscriber's queue is full
+ * (backpressure: a slow consumer slows down the writer instead of growing memory or losing events) until
+ * the consumer makes room or the subscription is closed. A change, or a whole loadCatalog /
+ * applyPriceChanges batch, is matched first and then enqueued with one lock round trip per subscription,
+ * and consumers take events in batches with poll.
+ */
+class InventoryChangeFeed {
+
+  enum Kind {
+    ENTER, LEAVE, REPRICE
+  }
+
+  static final class Event {
+    final Kind kind;
+    final int id;
+    final int oldPrice; // -1 when the item did not exist
+    final int newPrice; // -1 when the item was removed
+
+    Event(Kind kind, int id, int oldPrice, int newPrice) {
+      this.kind = kind;
+      this.id = id;
+      this.oldPrice = oldPrice;
+      this.newPrice = newPrice;
+    }
+
+    public String toString() {
+      return kind + "[Id: " + id + " price: " + oldPrice + " -> " + newPrice + "]";
+    }
+  }
+
+  final class Subscription implements AutoCloseable {
+    final int low;
+    final int high;
+    private final int capacity;
+    private final ArrayDeque<Event> queue = new ArrayDeque<>(); // grows with use, so a large bound costs nothing up front
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private volatile boolean closed;
+    private long stamp; // last publish that matched the old price, guarded by the feed
+    private List<Event> pending; // events matched by the publish in progress, guarded by the feed
+
+    private Subscription(int low, int high, int capacity) {
+      this.low = low;
+      this.high = high;
+      this.capacity = capacity;
+    }
+
+    /**
+     * Waits up to timeout for the first event, then takes whatever else is already queued, up to max
+     * events in all. Returns an empty list on timeout.
+     */
+    List<Event> poll(int max, long timeout, TimeUnit unit) throws InterruptedException {
+      long nanos = unit.toNanos(timeout);
+      lock.lockInterruptibly();
+      try {
+        while (queue.isEmpty()) {
+          if (nanos <= 0 || closed) {
+            return List.of();
+          }
+          nanos = notEmpty.awaitNanos(nanos);
+        }
+        List<Event> batch = new ArrayList<>(Math.min(max, queue.size()));
+        while (batch.size() < max && !queue.isEmpty()) {
+          batch.add(queue.poll());
+        }
+        notFull.signalAll();
+        return batch;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    // Queues the events in order, waiting for room whenever the queue is full; gives up once closed
+    private void put(List<Event> events) throws InterruptedException {
+      int next = 0;
+      lock.lockInterruptibly();
+      try {
+        while (next < events.size() && !closed) {
+          while (queue.size() >= capacity && !closed) {
+            notFull.await();
+          }
+          while (next < events.size() && queue.size() < capacity && !closed) {
+            queue.add(events.get(next++));
+          }
+          notEmpty.signal();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    // Stops delivery and releases a writer blocked on this subscription
+    @Override
+    public void close() {
+      closed = true;
+      synchronized (InventoryChangeFeed.this) {
+        subscriptions.remove(start(low), high, this);
+      }
+      lock.lock();
+      try {
+        queue.clear();
+        notFull.signalAll();
+        notEmpty.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public String toString() {
+      return "Subscription[" + low + ", " + high + "]";
+    }
+  }
+
+  // A subscription [low, high] is stored as the half-open [low - 1, high), and a price p is looked up with
+  // the window [p - 1, p): they overlap exactly when low <= p <= high, with no overflow at Integer.MAX_VALUE
+  private final IntervalTree<Subscription> subscriptions = new IntervalTree<>();
+  private final List<Subscription> touched = new ArrayList<>(); // subscriptions with pending events
+  private final List<Subscription> before = new ArrayList<>(); // scratch for the old price's matches
+  private long publishes;
+
+  /**
+   * Registers a range; capacity bounds the events buffered for it before the writer waits.
+   */
+  synchronized Subscription subscribe(int low, int high, int capacity) {
+    if (low > high) {
+      throw new IllegalArgumentException("low must not exceed high");
+    }
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    Subscription subscription = new Subscription(Math.max(low, Integer.MIN_VALUE + 1), high, capacity);
+    subscriptions.add(start(subscription.low), high, subscription);
+    return subscription;
+  }
+
+  synchronized boolean hasSubscribers() {
+    return subscriptions.size() > 0;
+  }
+
+  /**
+   * Reports one item change. oldPrice is -1 for a new item, newPrice is -1 for a removed one.
+   * Returns without allocating when no subscription covers either price.
+   * Blocks while a matching subscriber's queue is full; if the calling thread is interrupted meanwhile,
+   * the remaining deliveries of this change are dropped and the interrupt status is kept.
+   */
+  void publish(int id, int oldPrice, int newPrice) {
+    if (oldPrice == newPrice) {
+      return;
+    }
+    Subscription[] targets;
+    List<List<Event>> batches;
+    synchronized (this) {
+      if (!covered(oldPrice) && !covered(newPrice)) {
+        return;
+      }
+      match(id, oldPrice, newPrice);
+      targets = touched.toArray(new Subscription[0]);
+      batches = takePending();
+    }
+    deliver(targets, batches);
+  }
+
+  /**
+   * Reports count changes at once (ids[i] went from oldPrices[i] to newPrices[i], in order). Each
+   * subscription receives all of its events from the batch with a single enqueue, in change order.
+   * Blocking and interrupts behave as in publish.
+   */
+  void publishAll(int[] ids, int[] oldPrices, int[] newPrices, int count) {
+    Subscription[] targets;
+    List<List<Event>> batches;
+    synchronized (this) {
+      for (int i = 0; i < count; i++) {
+        if (oldPrices[i] != newPrices[i] && (covered(oldPrices[i]) || covered(newPrices[i]))) {
+          match(ids[i], oldPrices[i], newPrices[i]);
+        }
+      }
+      if (touched.isEmpty()) {
+        return;
+      }
+      targets = touched.toArray(new Subscription[0]);
+      batches = takePending();
+    }
+    deliver(targets, batches);
+  }
+
+  // True when some subscription contains price; O(log S)
+  private boolean covered(int price) {
+    return price != -1 && subscriptions.anyOverlap(price - 1, price);
+  }
+
+  // Appends the events of one change to the pending lists of the subscriptions it touches
+  private void match(int id, int oldPrice, int newPrice) {
+    long stamp = ++publishes;
+    if (oldPrice != -1) {
+      subscriptions.forEachOverlap(oldPrice - 1, oldPrice, (subscription) -> {
+        subscription.stamp = stamp;
+        before.add(subscription);
+      });
+    }
+    if (newPrice != -1) {
+      subscriptions.forEachOverlap(newPrice - 1, newPrice, (subscription) -> {
+        boolean repriced = subscription.stamp == stamp;
+        subscription.stamp = 0;
+        enqueue(subscription, new Event(repriced ? Kind.REPRICE : Kind.ENTER, id, oldPrice, newPrice));
+      });
+    }
+    for (Subscription subscription : before) {
+      if (subscription.stamp == stamp) {
+        enqueue(subscription, new Event(Kind.LEAVE, id, oldPrice, newPrice));
+      }
+    }
+    before.clear();
+  }
+
+  private void enqueue(Subscription subscription, Event event) {
+    if (subscription.pending == null) {
+      subscription.pending = new ArrayList<>();
+      touched.add(subscription);
+    }
+    subscription.pending.add(event);
+  }
+
+  // Hands the pending lists over in the order of touched and resets both
+  private List<List<Event>> takePending() {
+    List<List<Event>> batches = new ArrayList<>(touched.size());
+    for (Subscription subscription : touched) {
+      batches.add(subscription.pending);
+      subscription.pending = null;
+    }
+    touched.clear();
+    return batches;
+  }
+
+  // Outside the feed lock, so a full queue does not stop subscribe / close
+  private static void deliver(Subscription[] targets, List<List<Event>> batches) {
+    try {
+      for (int i = 0; i < targets.length; i++) {
+        targets[i].put(batches.get(i));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static int start(int low) {
+    return low - 1;
+  }
+
+  /**
+   * Demo plus a fan-out benchmark: many subscribers on overlapping ranges, one writer making single and
+   * batched changes, consumers draining in batches behind small queues.
+   */
+  public static void main(String[] args) throws Exception {
+    StoreInventorySystem store = new StoreInventorySystem();
+    Subscription cheap = store.subscribe(1, 100, 16);
+    store.addItem(1, 80);   // ENTER
+    store.addItem(1, 90);   // REPRICE
+    store.addItem(2, 300);  // nothing
+    store.addItem(2, 50);   // ENTER
+    store.addItem(1, 150);  // LEAVE
+    store.removeItem(2);    // LEAVE
+    System.out.println("Events for " + cheap + ": " + cheap.poll(16, 0, TimeUnit.MILLISECONDS));
+    cheap.close();
+
+    int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int changes = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+    int maxPrice = 1_000_000;
+    Random random = new Random(42);
+    List<Subscription> all = new ArrayList<>();
+    for (int i = 0; i < subscribers; i++) {
+      int low = 1 + random.nextInt(maxPrice);
+      all.add(store.subscribe(low, low + random.nextInt(1_000), 64));
+    }
+    LongAdder received = new LongAdder();
+    LongAdder batches = new LongAdder();
+    ExecutorService consumers = Executors.newFixedThreadPool(4);
+    for (int c = 0; c < 4; c++) {
+      int consumer = c;
+      consumers.submit(() -> {
+        while (!Thread.currentThread().isInterrupted()) {
+          boolean idle = true;
+          for (int i = consumer; i < all.size(); i += 4) {
+            List<Event> batch = all.get(i).poll(64, 0, TimeUnit.MILLISECONDS);
+            if (!batch.isEmpty()) {
+              received.add(batch.size());
+              batches.increment();
+              idle = false;
+            }
+          }
+          if (idle) {
+            Thread.sleep(1);
+          }
+        }
+        return null;
+      });
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < changes; i++) {
+      store.addItem(random.nextInt(changes / 4), 1 + random.nextInt(maxPrice));
+    }
+    double elapsed = (System.nanoTime() - startNanos) / 1e9;
+    System.out.printf("%d changes against %d subscriptions: %.0f changes/s%n", changes, subscribers,
+        changes / elapsed);
+    Thread.sleep(200);
+    long singleEvents = received.sum();
+    long singleBatches = batches.sum();
+    System.out.printf("Events delivered: %d in %d batches%n", singleEvents, singleBatches);
+
+    int batchSize = 1_000;
+    int[] ids = new int[batchSize];
+    int[] prices = new int[batchSize];
+    startNanos = System.nanoTime();
+    for (int done = 0; done < changes; done += batchSize) {
+      for (int i = 0; i < batchSize; i++) {
+        ids[i] = random.nextInt(changes / 4);
+        prices[i] = 1 + random.nextInt(maxPrice);
+      }
+      store.applyPriceChanges(ids, prices);
+    }
+    elapsed = (System.nanoTime() - startNanos) / 1e9;
+    System.out.printf("%d changes in batches of %d: %.0f changes/s%n", changes, batchSize, changes / elapsed);
+    Thread.sleep(200);
+    consumers.shutdownNow();
+    consumers.awaitTermination(1, TimeUnit.MINUTES);
+    System.out.printf("Events delivered: %d in %d batches%n", received.sum() - singleEvents,
+        batches.sum() - singleBatches);
+  }
+}
@@ -21,17 +21,19 @@ public class LeaderBoardSystem {
     }
   }
 
-  TreeMap<Integer, Set<Player>> leaderboard = new TreeMap<>(Comparator.reverseOrder());
   Map<String, Player> players = new HashMap<>();
+  OrderStatisticTree scores = new OrderStatisticTree(); // every player's score, for ranks
+  RankedPlayerTree ranking = new RankedPlayerTree(); // every player in leaderboard order, for pages
 
   /**
-   * getRank: O(S) — This is the rank calculation method
-   * that iterates over the scores, which is at most the number of distinct scores (S).
+   * getRank: O(log N) — dense rank: 1 + the number of distinct scores above the player's,
+   * so players with equal scores share a rank and the next score gets the next rank.
+   * Both counts come from the order-statistic tree of scores, which keeps subtree sizes.
    *
    * @param addPlayer - the player name
    * @return - rank
    */
-  private int getRank(String addPlayer) {
+  int getRank(String addPlayer) {
     Player player = null;
     if (players.containsKey(addPlayer)) {
       player = players.get(addPlayer);
@@ -40,58 +42,97 @@ public class LeaderBoardSystem {
   }
 
   private int computeRank(int score) {
-//    var highest = leaderboard.firstKey();
+    return scores.countDistinctGreater(score) + 1; //  including the player's own score
+  }
 
-//    int rank = leaderboard.subMap(highest, true, score, true).size(); //  including the lowest
-    return leaderboard.headMap(score, true).size(); //  including the lowest
+  /**
+   * getPlayerRank: O(log N) — competition rank: 1 + the number of players with a higher score,
+   * so after two players tied at rank 1 the next player is ranked 3.
+   *
+   * @param name - the player name
+   * @return - rank, or -1 for an unknown player
+   */
+  int getPlayerRank(String name) {
+    Player player = players.get(name);
+    return player == null ? -1 : countPlayersAbove(player.score) + 1;
   }
 
   /**
-   * getTopPlayers: O(N) — In the worst case, you iterate over the top N players.
+   * countPlayersAbove: O(log N)
+   *
+   * @param score - score to compare with
+   * @return - number of players with a strictly higher score
+   */
+  int countPlayersAbove(int score) {
+    return scores.countGreater(score);
+  }
+
+  /**
+   * getTopPlayers: O(log N + n) — the first n players in leaderboard order:
+   * score descending, ties broken by name ascending.
    *
    * @param n - top players with N rank
    * @return - list of players
    */
-  private List<Player> getTopPlayers(int n) {
-    int count = 0;
-    List<Player> playersWithScore = new ArrayList<>();
+  List<Player> getTopPlayers(int n) {
+    return ranking.page(0, n);
+  }
 
-    for (Map.Entry<Integer, Set<Player>> foundPlayers : leaderboard.entrySet()) {
-      if (count >= n) {
-        break;
-      }
-      playersWithScore.addAll(foundPlayers.getValue());
-      ++count;
+  /**
+   * getPage: O(log N + limit) — the ranking tree finds position offset from the root
+   * using subtree sizes, then walks forward in order; nothing above the page is visited.
+   *
+   * @param offset - 0-based position of the first player
+   * @param limit  - maximum number of players
+   * @return - the players at positions offset .. offset + limit - 1
+   */
+  List<Player> getPage(int offset, int limit) {
+    return ranking.page(offset, limit);
+  }
+
+  /**
+   * getPlayersAround: O(log N + above + below) — the player's position is found
+   * in O(log N), then the page around it is read in order.
+   *
+   * @param name  - the player name
+   * @param above - players ranked just above to include
+   * @param below - players ranked just below to include
+   * @return - the neighbours and the player in leaderboard order, empty for an unknown player
+   */
+  List<Player> getPlayersAround(String name, int above, int below) {
+    Player player = players.get(name);
+    if (player == null) {
+      return List.of();
     }
-    return playersWithScore;
+    int position = ranking.positionOf(player);
+    int from = Math.max(0, position - above);
+    return ranking.page(from, position - from + 1 + below);
   }
 
   /**
    * removePlayer: O(log N) —
-   * Removing a player from the leaderboard is logarithmic in the number of distinct scores.
+   * Removing a player from the score tree and the ranking tree is logarithmic in the number of players.
    *
    * @param removePlayer - remove the player name
    */
-  private void removePlayer(String removePlayer) {
+  void removePlayer(String removePlayer) {
     if (!players.containsKey(removePlayer)) {
       return;
     }
     Player player = players.remove(removePlayer); // player removed and marked as removed in leaderboard
-    leaderboard.get(player.score).remove(player); // remove from the leaderboard
-    if (leaderboard.get(player.score).isEmpty()) {
-      leaderboard.remove(player.score);
-    }
+    scores.remove(player.score); // O(log n)
+    ranking.remove(player); // O(log n), before the score changes
   }
 
   /**
    * addPoints: O(log N) — Adding or updating a player involves removing
-   * the player from the old score group and adding them to the new score group.
+   * the player's old score from both trees and adding the new one.
    * Both operations are logarithmic in the size of the leaderboard.
    *
    * @param name - name of the player
    * @param i    - score of the player
    */
-  private void addPoints(String name, int i) {
+  void addPoints(String name, int i) {
     Player player;
     if (!players.containsKey(name)) {
       player = new Player(name, i);
@@ -102,8 +143,8 @@ public class LeaderBoardSystem {
     }
     // put the player for lookup
     players.put(name, player);
-    // add the player to the score group
-    leaderboard.computeIfAbsent(player.score, (withScore) -> new HashSet<>()).add(player);
+    scores.add(player.score); // O(log n)
+    ranking.add(player); // O(log n)
   }
 
   public static void main(String[] args) {
@@ -142,5 +183,100 @@ public class LeaderBoardSystem {
     System.out.println("Removed player: Charlie");
     rank = leaderboard.getRank("Charlie");
     System.out.println("Rank: Charlie" + rank);
+
+// Dense rank against player rank with ties
+    leaderboard.addPoints("Dave", 170);
+    leaderboard.addPoints("Erin", 100);
+    System.out.println("Rank: Erin: " + leaderboard.getRank("Erin") + ", player rank: "
+        + leaderboard.getPlayerRank("Erin")); // Expected output: 2, 3 (Alice and Dave tie at 170)
+
+// Pages and neighbours
+    System.out.println("Page 2 of size 2: " + leaderboard.getPage(2, 2)); // Expected output: [Erin 100]
+    System.out.println("Around Dave: " + leaderboard.getPlayersAround("Dave", 1, 1)); // Expected output: [Alice 170, Dave 170, Erin 100]
+
+    int players = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    rankBenchmark(players);
+  }
+
+  // Score churn on a large board, both ranks checked against a scan of the players, then timed
+  private static void rankBenchmark(int count) {
+    LeaderBoardSystem board = new LeaderBoardSystem();
+    Random random = new Random(42);
+    for (int i = 0; i < count; i++) {
+      board.addPoints("p" + i, random.nextInt(count));
+    }
+    for (int i = 0; i < count / 2; i++) {
+      String name = "p" + random.nextInt(count);
+      if (random.nextInt(10) == 0) {
+        board.removePlayer(name);
+      } else {
+        board.addPoints(name, random.nextInt(1_000) - 500);
+      }
+    }
+    // one scan of the players, sorted: every score and every distinct score in increasing order
+    int[] sorted = new int[board.players.size()];
+    int size = 0;
+    for (Player player : board.players.values()) {
+      sorted[size++] = player.score;
+    }
+    Arrays.sort(sorted);
+    int[] distinct = Arrays.stream(sorted).distinct().toArray();
+    for (int i = 0; i < 200; i++) {
+      String name = "p" + random.nextInt(count);
+      Player player = board.players.get(name);
+      if (player == null) {
+        continue;
+      }
+      int above = sorted.length - countAtMost(sorted, player.score);
+      int distinctAbove = distinct.length - countAtMost(distinct, player.score);
+      if (board.getRank(name) != distinctAbove + 1 || board.getPlayerRank(name) != above + 1) {
+        throw new AssertionError("rank mismatch for " + name);
+      }
+    }
+    long checksum = 0;
+    List<Player> ordered = new ArrayList<>(board.players.values());
+    ordered.sort(RankedPlayerTree.ORDER);
+    for (int i = 0; i < 200; i++) {
+      int offset = random.nextInt(ordered.size() + 10);
+      int limit = random.nextInt(50);
+      if (!board.getPage(offset, limit).equals(ordered.subList(Math.min(offset, ordered.size()),
+          Math.min(offset + limit, ordered.size())))) {
+        throw new AssertionError("page mismatch at " + offset);
+      }
+      Player player = ordered.get(random.nextInt(ordered.size()));
+      int position = ordered.indexOf(player);
+      if (!board.getPlayersAround(player.name, 3, 3).equals(ordered.subList(Math.max(0, position - 3),
+          Math.min(position + 4, ordered.size())))) {
+        throw new AssertionError("around-me mismatch for " + player.name);
+      }
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < 100_000; i++) {
+      checksum += board.getPage(random.nextInt(board.players.size()), 50).size();
+    }
+    System.out.printf("Page of 50 at a random depth: %d ns/op%n", (System.nanoTime() - startNanos) / 100_000);
+    int queries = 1_000_000;
+    startNanos = System.nanoTime();
+    for (int i = 0; i < queries; i++) {
+      String name = "p" + random.nextInt(count);
+      checksum += board.getRank(name) + board.getPlayerRank(name);
+    }
+    System.out.printf("%d players, %d distinct scores: getRank + getPlayerRank %d ns/op (checksum %d)%n",
+        board.players.size(), distinct.length, (System.nanoTime() - startNanos) / queries, checksum);
+  }
+
+  // Number of values <= value in a sorted array
+  private static int countAtMost(int[] sorted, int value) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] <= value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
   }
 }
@@ -0,0 +1,313 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tick history of many symbols in one engine, for a feed that is almost always in timestamp order.
+ * <p>
+ * Every symbol has its own append-only pair of arrays (timestamps, prices). A tick later than the symbol's
+ * last one is appended: no tree insert, no lock. The arrays are written by a single writer per symbol, and
+ * readers on any thread see them without locking: the writer fills the slot, then publishes it through a
+ * volatile size, and grows the arrays by publishing a filled copy before any slot beyond the old length.
+ * A reader that reads the size first therefore always finds every slot below it in place.
+ * <p>
+ * A tick at or before the symbol's last timestamp (late, or a correction) goes to a per-symbol
+ * ConcurrentSkipListMap side buffer, created on the first such tick; the side buffer wins over the arrays
+ * for the same timestamp.
+ * <p>
+ * addStockPrice: O(1) amortized in order, O(log L) into the side buffer of L ticks
+ * getStockPriceAt / getNearestEarlierStockPrice: O(log N) binary search, plus O(log L) once there is a
+ * side buffer
+ * <p>
+ * Ticks for one symbol must come from one thread at a time (partition symbols across writer threads);
+ * different symbols may be written concurrently.
+ */
+public class MultiSymbolPriceManager {
+
+  private static final class Ticks {
+    final int[] timestamps;
+    final int[] prices;
+
+    Ticks(int capacity) {
+      timestamps = new int[capacity];
+      prices = new int[capacity];
+    }
+  }
+
+  private static final class Series {
+    volatile Ticks ticks = new Ticks(16);
+    volatile int size; // slots below it are filled and never change
+    volatile ConcurrentSkipListMap<Integer, Integer> late; // null until the first out-of-order tick
+
+    // Single writer
+    void add(int ts, int price) {
+      int n = size;
+      Ticks current = ticks;
+      if (n > 0 && ts <= current.timestamps[n - 1]) {
+        ConcurrentSkipListMap<Integer, Integer> side = late;
+        if (side == null) {
+          side = new ConcurrentSkipListMap<>();
+          late = side;
+        }
+        side.put(ts, price);
+        return;
+      }
+      if (n == current.timestamps.length) {
+        Ticks grown = new Ticks(n + (n >> 1));
+        System.arraycopy(current.timestamps, 0, grown.timestamps, 0, n);
+        System.arraycopy(current.prices, 0, grown.prices, 0, n);
+        ticks = grown; // published before any slot beyond n
+        current = grown;
+      }
+      current.timestamps[n] = ts;
+      current.prices[n] = price;
+      size = n + 1;
+    }
+
+    // Index of the last appended tick at or before ts among the first n, or -1
+    static int floorIndex(int[] timestamps, int n, int ts) {
+      int low = 0;
+      int high = n - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (timestamps[mid] <= ts) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return high;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Series> symbols = new ConcurrentHashMap<>();
+
+  public void addStockPrice(String symbol, int ts, int price) {
+    Series series = symbols.get(symbol);
+    if (series == null) {
+      series = symbols.computeIfAbsent(symbol, (s) -> new Series());
+    }
+    series.add(ts, price);
+  }
+
+  // The price at exactly ts, or null
+  public Integer getStockPriceAt(String symbol, int ts) {
+    Series series = symbols.get(symbol);
+    if (series == null) {
+      return null;
+    }
+    ConcurrentSkipListMap<Integer, Integer> late = series.late;
+    if (late != null) {
+      Integer corrected = late.get(ts);
+      if (corrected != null) {
+        return corrected;
+      }
+    }
+    int n = series.size; // read before the arrays
+    Ticks ticks = series.ticks;
+    int at = Series.floorIndex(ticks.timestamps, n, ts);
+    return at >= 0 && ticks.timestamps[at] == ts ? ticks.prices[at] : null;
+  }
+
+  // The price of the last tick at or before ts, or -1
+  public int getNearestEarlierStockPrice(String symbol, int ts) {
+    Series series = symbols.get(symbol);
+    if (series == null) {
+      return -1;
+    }
+    int n = series.size; // read before the arrays
+    Ticks ticks = series.ticks;
+    int at = Series.floorIndex(ticks.timestamps, n, ts);
+    ConcurrentSkipListMap<Integer, Integer> late = series.late;
+    if (late != null) {
+      Map.Entry<Integer, Integer> corrected = late.floorEntry(ts);
+      if (corrected != null && (at < 0 || corrected.getKey() >= ticks.timestamps[at])) {
+        return corrected.getValue();
+      }
+    }
+    return at < 0 ? -1 : ticks.prices[at];
+  }
+
+  public int symbolCount() {
+    return symbols.size();
+  }
+
+  /**
+   * Demo, a check against one TreeMap per symbol, a visibility check under concurrent ingestion, and
+   * ingest and query throughput against one SimpleStockPriceManager per symbol behind a lock.
+   */
+  public static void main(String[] args) throws Exception {
+    MultiSymbolPriceManager manager = new MultiSymbolPriceManager();
+    manager.addStockPrice("ACME", 1, 100);
+    manager.addStockPrice("ACME", 2, 150);
+    manager.addStockPrice("ACME", 5, 250);
+    manager.addStockPrice("ACME", 4, 200); // out of order
+    manager.addStockPrice("INIT", 3, 42);
+    System.out.println("ACME at 2: " + manager.getStockPriceAt("ACME", 2)); // 150
+    System.out.println("ACME at or before 4: " + manager.getNearestEarlierStockPrice("ACME", 4)); // 200
+    System.out.println("ACME at or before 6: " + manager.getNearestEarlierStockPrice("ACME", 6)); // 250
+    System.out.println("INIT at or before 2: " + manager.getNearestEarlierStockPrice("INIT", 2)); // -1
+
+    checkAgainstTreeMaps();
+    checkConcurrentVisibility();
+
+    int symbolCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+    long millis = args.length > 1 ? Long.parseLong(args[1]) : 1_000;
+    String[] names = new String[symbolCount];
+    for (int s = 0; s < symbolCount; s++) {
+      names[s] = "SYM" + s;
+    }
+    System.out.printf("Available processors: %d, symbols: %d%n", Runtime.getRuntime().availableProcessors(),
+        symbolCount);
+    System.out.println("writers  readers  mode          ingest ticks/s  queries/s");
+    for (int readers = 1; readers <= 8; readers *= 2) {
+      Map<String, SimpleStockPriceManager> locked = new HashMap<>();
+      for (String name : names) {
+        locked.put(name, new SimpleStockPriceManager());
+      }
+      run("locked", 2, readers, names, millis, (symbol, ts, price) -> {
+        SimpleStockPriceManager series = locked.get(symbol);
+        synchronized (series) {
+          series.addStockPrice(ts, price);
+        }
+      }, (symbol, ts) -> {
+        SimpleStockPriceManager series = locked.get(symbol);
+        synchronized (series) {
+          return series.getNearestEarlierStockPrice(ts);
+        }
+      });
+      MultiSymbolPriceManager lockFree = new MultiSymbolPriceManager();
+      run("append-only", 2, readers, names, millis, lockFree::addStockPrice,
+          lockFree::getNearestEarlierStockPrice);
+    }
+  }
+
+  private interface Ingest {
+    void add(String symbol, int ts, int price);
+  }
+
+  private interface Query {
+    int floor(String symbol, int ts);
+  }
+
+  // Writer w owns the symbols s with s % writers == w; one tick in a hundred arrives late
+  private static void run(String mode, int writers, int readers, String[] names, long millis, Ingest ingest,
+      Query query) throws Exception {
+    AtomicBoolean stop = new AtomicBoolean();
+    LongAdder ingested = new LongAdder();
+    LongAdder queried = new LongAdder();
+    int[] clock = new int[names.length]; // per-symbol last timestamp, written by the owning writer only
+    ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      pool.submit(() -> {
+        SplittableRandom random = new SplittableRandom(writer);
+        long count = 0;
+        while (!stop.get()) {
+          int s = writer + writers * random.nextInt((names.length - writer + writers - 1) / writers);
+          int ts = random.nextInt(100) == 0
+              ? clock[s] - random.nextInt(1_000)
+              : (clock[s] += 1 + random.nextInt(3));
+          ingest.add(names[s], ts, 10_000 + random.nextInt(100));
+          count++;
+        }
+        ingested.add(count);
+      });
+    }
+    for (int r = 0; r < readers; r++) {
+      long seed = 100 + r;
+      pool.submit(() -> {
+        SplittableRandom random = new SplittableRandom(seed);
+        long count = 0;
+        long checksum = 0;
+        while (!stop.get()) {
+          checksum += query.floor(names[random.nextInt(names.length)], random.nextInt(1 << 20));
+          count++;
+        }
+        queried.add(count);
+        return checksum;
+      });
+    }
+    Thread.sleep(millis);
+    stop.set(true);
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.MINUTES);
+    System.out.printf("%7d  %7d  %-12s  %14.0f  %9.0f%n", writers, readers, mode,
+        ingested.sum() * 1000.0 / millis, queried.sum() * 1000.0 / millis);
+  }
+
+  // Random in-order, late and duplicate ticks over a few symbols, compared with one TreeMap per symbol
+  private static void checkAgainstTreeMaps() {
+    Random random = new Random(17);
+    MultiSymbolPriceManager manager = new MultiSymbolPriceManager();
+    Map<String, TreeMap<Integer, Integer>> expected = new HashMap<>();
+    Map<String, Integer> clock = new HashMap<>();
+    for (int op = 0; op < 200_000; op++) {
+      String symbol = "S" + random.nextInt(20);
+      int last = clock.getOrDefault(symbol, 0);
+      int ts = random.nextInt(20) == 0 ? last - random.nextInt(500) : last + random.nextInt(5);
+      clock.put(symbol, Math.max(last, ts));
+      int price = random.nextInt(1_000);
+      manager.addStockPrice(symbol, ts, price);
+      expected.computeIfAbsent(symbol, (s) -> new TreeMap<>()).put(ts, price);
+      String probeSymbol = "S" + random.nextInt(21);
+      int probe = random.nextInt(Math.max(1, clock.getOrDefault(probeSymbol, 0) + 10)) - 5;
+      TreeMap<Integer, Integer> prices = expected.getOrDefault(probeSymbol, new TreeMap<>());
+      Map.Entry<Integer, Integer> floor = prices.floorEntry(probe);
+      if (!Objects.equals(manager.getStockPriceAt(probeSymbol, probe), prices.get(probe))
+          || manager.getNearestEarlierStockPrice(probeSymbol, probe) != (floor == null ? -1 : floor.getValue())) {
+        throw new AssertionError(probeSymbol + " at " + probe + " differs after " + op + " ticks");
+      }
+    }
+    System.out.println("Append-only series matched one TreeMap per symbol over 200000 ticks");
+  }
+
+  /**
+   * One writer appends price == timestamp to a symbol while readers query just behind it: every answer
+   * must be the floor itself (the published arrays are never seen half-filled, even while they grow) and
+   * answers for a fixed timestamp must not go back in time.
+   */
+  private static void checkConcurrentVisibility() throws Exception {
+    MultiSymbolPriceManager manager = new MultiSymbolPriceManager();
+    int ticks = 2_000_000;
+    ExecutorService pool = Executors.newFixedThreadPool(3);
+    Future<?> writer = pool.submit(() -> {
+      for (int ts = 1; ts <= ticks; ts++) {
+        manager.addStockPrice("LIVE", 2 * ts, 2 * ts);
+      }
+    });
+    List<Future<Long>> readers = new ArrayList<>();
+    for (int r = 0; r < 2; r++) {
+      readers.add(pool.submit(() -> {
+        SplittableRandom random = new SplittableRandom();
+        long checks = 0;
+        int seen = -1;
+        while (!writer.isDone()) {
+          int probe = 2 * ticks + 1;
+          int floor = manager.getNearestEarlierStockPrice("LIVE", probe);
+          if (floor < seen || (floor != -1 && floor % 2 != 0)) {
+            throw new AssertionError("floor went from " + seen + " to " + floor);
+          }
+          seen = floor;
+          if (floor > 0) {
+            int earlier = 2 * (1 + random.nextInt(floor / 2));
+            Integer exact = manager.getStockPriceAt("LIVE", earlier);
+            if (exact == null || exact != earlier) {
+              throw new AssertionError("published tick " + earlier + " read as " + exact);
+            }
+          }
+          checks++;
+        }
+        return checks;
+      }));
+    }
+    writer.get();
+    long checks = 0;
+    for (Future<Long> reader : readers) {
+      checks += reader.get();
+    }
+    pool.shutdown();
+    System.out.println("Readers saw consistent prefixes in " + checks + " queries during ingestion");
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Order-statistic multiset of int keys: an AVL tree of distinct keys where every node keeps how many
+ * times its key was added plus, for its whole subtree, the number of keys (with multiplicity) and the
+ * number of distinct keys. Rank and dense rank then follow one root-to-leaf path.
+ * <p>
+ * add / remove: O(log D), D being the number of distinct keys
+ * countGreater / countDistinctGreater: O(log D)
+ */
+class OrderStatisticTree {
+
+  static class Node {
+    final int key;
+    int count; // multiplicity of key
+    Node left;
+    Node right;
+    int height = 1;
+    int size; // keys in the subtree, with multiplicity
+    int distinct; // nodes in the subtree
+
+    Node(int key, int count) {
+      this.key = key;
+      this.count = count;
+      this.size = count;
+      this.distinct = 1;
+    }
+  }
+
+  private Node root;
+
+  void add(int key) {
+    root = insert(root, key);
+  }
+
+  // Removes one occurrence of key; returns false when key is absent
+  boolean remove(int key) {
+    if (count(key) == 0) {
+      return false;
+    }
+    root = delete(root, key);
+    return true;
+  }
+
+  // Multiplicity of key
+  int count(int key) {
+    Node node = root;
+    while (node != null) {
+      if (key == node.key) {
+        return node.count;
+      }
+      node = key < node.key ? node.left : node.right;
+    }
+    return 0;
+  }
+
+  // Number of keys strictly above key
+  int countGreater(int key) {
+    int count = 0;
+    Node node = root;
+    while (node != null) {
+      if (node.key > key) {
+        count += size(node.right) + node.count;
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return count;
+  }
+
+  // Number of distinct keys strictly above key
+  int countDistinctGreater(int key) {
+    int count = 0;
+    Node node = root;
+    while (node != null) {
+      if (node.key > key) {
+        count += distinct(node.right) + 1;
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return count;
+  }
+
+  private Node insert(Node node, int key) {
+    if (node == null) {
+      return new Node(key, 1);
+    }
+    if (key < node.key) {
+      node.left = insert(node.left, key);
+    } else if (key > node.key) {
+      node.right = insert(node.right, key);
+    } else {
+      node.count++;
+      update(node);
+      return node;
+    }
+    return balance(node);
+  }
+
+  private Node delete(Node node, int key) {
+    if (key < node.key) {
+      node.left = delete(node.left, key);
+    } else if (key > node.key) {
+      node.right = delete(node.right, key);
+    } else if (node.count > 1) {
+      node.count--;
+      update(node);
+      return node;
+    } else {
+      if (node.left == null) {
+        return node.right;
+      }
+      if (node.right == null) {
+        return node.left;
+      }
+      Node successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      node.right = detachMin(node.right);
+      successor.left = node.left;
+      successor.right = node.right;
+      node = successor;
+    }
+    return balance(node);
+  }
+
+  private Node detachMin(Node node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = detachMin(node.left);
+    return balance(node);
+  }
+
+  private Node balance(Node node) {
+    update(node);
+    int factor = height(node.left) - height(node.right);
+    if (factor > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (factor < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private Node rotateRight(Node node) {
+    Node left = node.left;
+    node.left = left.right;
+    left.right = node;
+    update(node);
+    update(left);
+    return left;
+  }
+
+  private Node rotateLeft(Node node) {
+    Node right = node.right;
+    node.right = right.left;
+    right.left = node;
+    update(node);
+    update(right);
+    return right;
+  }
+
+  private static void update(Node node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    node.size = size(node.left) + node.count + size(node.right);
+    node.distinct = distinct(node.left) + 1 + distinct(node.right);
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static int distinct(Node node) {
+    return node == null ? 0 : node.distinct;
+  }
+}
@@ -0,0 +1,392 @@
+import java.io.*;
+import java.net.*;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Leaderboard spread over several LeaderBoardSystem partitions, each in its own process (or thread) behind
+ * a local socket. A player lives on partition floorMod(name.hashCode(), N), so every update goes to exactly
+ * one partition.
+ * <p>
+ * Global rank: 1 + the sum over all partitions of "players scoring above s", where s is the player's score.
+ * The question goes out to every partition before any answer is read, so it costs one round trip of
+ * O(log N) work per partition, not N sequential ones.
+ * <p>
+ * Global top-K: a k-way merge of the partitions' own rankings (score descending, then name). Each
+ * partition is asked for its first ceil(K / N) players; the merge takes the best head among the
+ * partitions and only when a partition's buffer runs dry is its next page fetched, twice as large as the
+ * previous one. A partition never ships more than about twice the players it contributes to the result,
+ * instead of its whole board.
+ */
+public class PartitionedLeaderBoard implements Closeable {
+
+  private static final byte ADD_POINTS = 1;
+  private static final byte REMOVE_PLAYER = 2;
+  private static final byte GET_SCORE = 3;
+  private static final byte COUNT_ABOVE = 4;
+  private static final byte PAGE = 5;
+
+  private final List<PartitionClient> partitions = new ArrayList<>();
+  private long playersFetched; // by top-K merges, for the harness
+
+  private PartitionedLeaderBoard(List<InetSocketAddress> addresses) throws IOException {
+    for (InetSocketAddress address : addresses) {
+      partitions.add(new PartitionClient(address));
+    }
+  }
+
+  public static PartitionedLeaderBoard connect(List<InetSocketAddress> addresses) throws IOException {
+    if (addresses.isEmpty()) {
+      throw new IllegalArgumentException("at least one partition is needed");
+    }
+    return new PartitionedLeaderBoard(addresses);
+  }
+
+  public synchronized void addPoints(String name, int points) throws IOException {
+    PartitionClient partition = partitionOf(name);
+    partition.out.writeByte(ADD_POINTS);
+    partition.out.writeUTF(name);
+    partition.out.writeInt(points);
+    partition.out.flush();
+    partition.in.readByte(); // acknowledged once applied
+  }
+
+  public synchronized void removePlayer(String name) throws IOException {
+    PartitionClient partition = partitionOf(name);
+    partition.out.writeByte(REMOVE_PLAYER);
+    partition.out.writeUTF(name);
+    partition.out.flush();
+    partition.in.readByte();
+  }
+
+  // The player's score, or null for an unknown player
+  public synchronized Integer getScore(String name) throws IOException {
+    PartitionClient partition = partitionOf(name);
+    partition.out.writeByte(GET_SCORE);
+    partition.out.writeUTF(name);
+    partition.out.flush();
+    return partition.in.readBoolean() ? partition.in.readInt() : null;
+  }
+
+  // 1 + number of players scoring higher on any partition, or -1 for an unknown player
+  public synchronized int getPlayerRank(String name) throws IOException {
+    Integer score = getScore(name);
+    return score == null ? -1 : countPlayersAbove(score) + 1;
+  }
+
+  // Scatter the question to every partition, then gather the answers
+  public synchronized int countPlayersAbove(int score) throws IOException {
+    for (PartitionClient partition : partitions) {
+      partition.out.writeByte(COUNT_ABOVE);
+      partition.out.writeInt(score);
+      partition.out.flush();
+    }
+    int above = 0;
+    for (PartitionClient partition : partitions) {
+      above += partition.in.readInt();
+    }
+    return above;
+  }
+
+  public synchronized List<LeaderBoardSystem.Player> getTopPlayers(int k) throws IOException {
+    List<LeaderBoardSystem.Player> top = new ArrayList<>(k);
+    if (k <= 0) {
+      return top;
+    }
+    int firstPage = (k + partitions.size() - 1) / partitions.size();
+    List<Cursor> cursors = new ArrayList<>();
+    for (PartitionClient partition : partitions) {
+      Cursor cursor = new Cursor(partition, firstPage);
+      cursor.request();
+      cursors.add(cursor);
+    }
+    PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> RankedPlayerTree.ORDER.compare(a.head(), b.head()));
+    for (Cursor cursor : cursors) {
+      cursor.receive();
+      if (!cursor.buffer.isEmpty()) {
+        heads.add(cursor);
+      }
+    }
+    while (top.size() < k && !heads.isEmpty()) {
+      Cursor best = heads.poll();
+      top.add(best.buffer.poll());
+      if (best.buffer.isEmpty() && !best.exhausted) {
+        best.request();
+        best.receive();
+      }
+      if (!best.buffer.isEmpty()) {
+        heads.add(best);
+      }
+    }
+    return top;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    for (PartitionClient partition : partitions) {
+      partition.socket.close();
+    }
+  }
+
+  private PartitionClient partitionOf(String name) {
+    return partitions.get(Math.floorMod(name.hashCode(), partitions.size()));
+  }
+
+  // One partition's ranking, read page by page
+  private final class Cursor {
+    final PartitionClient partition;
+    final ArrayDeque<LeaderBoardSystem.Player> buffer = new ArrayDeque<>();
+    int offset;
+    int pageSize;
+    boolean exhausted;
+
+    Cursor(PartitionClient partition, int pageSize) {
+      this.partition = partition;
+      this.pageSize = pageSize;
+    }
+
+    LeaderBoardSystem.Player head() {
+      return buffer.peek();
+    }
+
+    void request() throws IOException {
+      partition.out.writeByte(PAGE);
+      partition.out.writeInt(offset);
+      partition.out.writeInt(pageSize);
+      partition.out.flush();
+    }
+
+    void receive() throws IOException {
+      int count = partition.in.readInt();
+      for (int i = 0; i < count; i++) {
+        String name = partition.in.readUTF();
+        buffer.add(new LeaderBoardSystem.Player(name, partition.in.readInt()));
+      }
+      playersFetched += count;
+      offset += count;
+      exhausted = count < pageSize;
+      pageSize *= 2;
+    }
+  }
+
+  private static final class PartitionClient {
+    final Socket socket;
+    final DataInputStream in;
+    final DataOutputStream out;
+
+    PartitionClient(InetSocketAddress address) throws IOException {
+      socket = new Socket(address.getAddress(), address.getPort());
+      socket.setTcpNoDelay(true);
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+  }
+
+  /**
+   * One partition: a LeaderBoardSystem served on a loopback port, one thread per connection.
+   */
+  static final class PartitionServer implements Closeable {
+    private final LeaderBoardSystem board = new LeaderBoardSystem();
+    private final ServerSocket server;
+
+    PartitionServer() throws IOException {
+      server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    InetSocketAddress address() {
+      return new InetSocketAddress(server.getInetAddress(), server.getLocalPort());
+    }
+
+    // Accepts connections until closed
+    void serve() {
+      try {
+        while (true) {
+          Socket socket = server.accept();
+          Thread handler = new Thread(() -> handle(socket), "partition-" + server.getLocalPort());
+          handler.setDaemon(true);
+          handler.start();
+        }
+      } catch (IOException e) {
+        // closed
+      }
+    }
+
+    private void handle(Socket socket) {
+      try (socket) {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        while (true) {
+          byte command;
+          try {
+            command = in.readByte();
+          } catch (EOFException e) {
+            return;
+          }
+          synchronized (board) {
+            execute(command, in, out);
+          }
+          out.flush();
+        }
+      } catch (IOException e) {
+        // client went away
+      }
+    }
+
+    private void execute(byte command, DataInputStream in, DataOutputStream out) throws IOException {
+      switch (command) {
+        case ADD_POINTS:
+          board.addPoints(in.readUTF(), in.readInt());
+          out.writeByte(0);
+          break;
+        case REMOVE_PLAYER:
+          board.removePlayer(in.readUTF());
+          out.writeByte(0);
+          break;
+        case GET_SCORE:
+          LeaderBoardSystem.Player player = board.players.get(in.readUTF());
+          out.writeBoolean(player != null);
+          if (player != null) {
+            out.writeInt(player.score);
+          }
+          break;
+        case COUNT_ABOVE:
+          out.writeInt(board.countPlayersAbove(in.readInt()));
+          break;
+        case PAGE:
+          List<LeaderBoardSystem.Player> page = board.getPage(in.readInt(), in.readInt());
+          out.writeInt(page.size());
+          for (LeaderBoardSystem.Player ranked : page) {
+            out.writeUTF(ranked.name);
+            out.writeInt(ranked.score);
+          }
+          break;
+        default:
+          throw new IOException("unknown command " + command);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      server.close();
+    }
+  }
+
+  /**
+   * Test harness: starts partitions in child JVMs, drives random score updates and removals through the
+   * partitioned board and a single in-process LeaderBoardSystem (the oracle), and checks global top-K
+   * and global ranks against the oracle along the way.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 1 && args[0].equals("--partition")) {
+      runPartitionProcess();
+      return;
+    }
+    int partitionCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int operations = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+    List<Process> processes = new ArrayList<>();
+    List<InetSocketAddress> addresses = new ArrayList<>();
+    for (int i = 0; i < partitionCount; i++) {
+      Process process = new ProcessBuilder(
+          Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+          "-cp", System.getProperty("java.class.path"),
+          PartitionedLeaderBoard.class.getName(), "--partition")
+          .redirectError(ProcessBuilder.Redirect.INHERIT)
+          .start();
+      processes.add(process);
+      BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+      addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(output.readLine().trim())));
+    }
+
+    LeaderBoardSystem oracle = new LeaderBoardSystem();
+    try (PartitionedLeaderBoard board = connect(addresses)) {
+      board.addPoints("Alice", 100);
+      board.addPoints("Bob", 200);
+      board.addPoints("Charlie", 150);
+      board.addPoints("Alice", 70);
+      System.out.println("Top Players: " + board.getTopPlayers(2)); // [Bob 200, Alice 170]
+      System.out.println("Rank: Charlie: " + board.getPlayerRank("Charlie")); // 3
+      for (String name : List.of("Alice", "Bob", "Charlie")) {
+        board.removePlayer(name);
+      }
+
+      Random random = new Random(42);
+      int players = operations / 5;
+      int checks = 0;
+      long startNanos = System.nanoTime();
+      for (int op = 1; op <= operations; op++) {
+        String name = "player-" + random.nextInt(players);
+        if (random.nextInt(20) == 0) {
+          board.removePlayer(name);
+          oracle.removePlayer(name);
+        } else {
+          int points = random.nextInt(1_000) - 100;
+          board.addPoints(name, points);
+          oracle.addPoints(name, points);
+        }
+        if (op % 1_000 == 0) {
+          int k = 1 + random.nextInt(200);
+          if (!sameRanking(board.getTopPlayers(k), oracle.getTopPlayers(k))) {
+            throw new AssertionError("top-" + k + " differs from the oracle after " + op + " operations");
+          }
+          for (int i = 0; i < 20; i++) {
+            String probe = "player-" + random.nextInt(players);
+            if (board.getPlayerRank(probe) != oracle.getPlayerRank(probe)) {
+              throw new AssertionError("rank of " + probe + " differs from the oracle");
+            }
+          }
+          checks++;
+        }
+      }
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      System.out.printf("%d partitions, %d operations, %d top-K / rank checkpoints: all matched the oracle (%.1f s)%n",
+          partitionCount, operations, checks, seconds);
+
+      int k = 100;
+      board.playersFetched = 0;
+      startNanos = System.nanoTime();
+      for (int i = 0; i < 1_000; i++) {
+        board.getTopPlayers(k);
+      }
+      System.out.printf("Top-%d over %d players: %.0f us/op, %d players fetched per query%n", k,
+          oracle.players.size(), (System.nanoTime() - startNanos) / 1e3 / 1_000, board.playersFetched / 1_000);
+      startNanos = System.nanoTime();
+      for (int i = 0; i < 10_000; i++) {
+        board.getPlayerRank("player-" + random.nextInt(players));
+      }
+      System.out.printf("Global rank: %.0f us/op%n", (System.nanoTime() - startNanos) / 1e3 / 10_000);
+    } finally {
+      for (Process process : processes) {
+        process.getOutputStream().close(); // the partition exits when its stdin closes
+        process.waitFor();
+      }
+    }
+  }
+
+  private static boolean sameRanking(List<LeaderBoardSystem.Player> a, List<LeaderBoardSystem.Player> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (!a.get(i).name.equals(b.get(i).name) || a.get(i).score != b.get(i).score) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Child process: serve one partition, print the port, exit when the parent closes stdin
+  private static void runPartitionProcess() throws IOException {
+    PartitionServer server = new PartitionServer();
+    Thread acceptor = new Thread(server::serve, "partition-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    System.out.println(server.address().getPort());
+    System.out.flush();
+    while (System.in.read() != -1) {
+      // wait for the parent
+    }
+    server.close();
+  }
+}
@@ -0,0 +1,196 @@
+import java.util.function.Function;
+
+/**
+ * Immutable (persistent) AVL tree from int keys to values. put and remove never modify a node: they copy
+ * the O(log N) nodes on the path to the key and share everything else, so every root ever returned stays a
+ * valid, unchanging point-in-time version that any number of threads can read without synchronization.
+ * <p>
+ * put / remove: O(log N), allocating O(log N) nodes
+ * get / floor / ceiling / lower / higher / first / last: O(log N)
+ * Range iteration: O(log N + K)
+ */
+final class PersistentIntTree {
+
+  static final class Node<V> {
+    final int key;
+    final V value;
+    final Node<V> left;
+    final Node<V> right;
+    final int height;
+
+    Node(int key, V value, Node<V> left, Node<V> right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = 1 + Math.max(height(left), height(right));
+    }
+  }
+
+  // Callback for range iteration; return false to stop
+  interface Visitor<V> {
+    boolean visit(int key, V value);
+  }
+
+  private PersistentIntTree() {
+  }
+
+  static <V> V get(Node<V> node, int key) {
+    while (node != null) {
+      if (key == node.key) {
+        return node.value;
+      }
+      node = key < node.key ? node.left : node.right;
+    }
+    return null;
+  }
+
+  static <V> Node<V> put(Node<V> node, int key, V value) {
+    if (node == null) {
+      return new Node<>(key, value, null, null);
+    }
+    if (key < node.key) {
+      return balance(node.key, node.value, put(node.left, key, value), node.right);
+    }
+    if (key > node.key) {
+      return balance(node.key, node.value, node.left, put(node.right, key, value));
+    }
+    return new Node<>(key, value, node.left, node.right);
+  }
+
+  // Replaces the value at key with update(old value, or null); a null result removes the key
+  static <V> Node<V> update(Node<V> node, int key, Function<V, V> update) {
+    V value = update.apply(get(node, key));
+    return value == null ? remove(node, key) : put(node, key, value);
+  }
+
+  static <V> Node<V> remove(Node<V> node, int key) {
+    if (node == null) {
+      return null;
+    }
+    if (key < node.key) {
+      Node<V> left = remove(node.left, key);
+      return left == node.left ? node : balance(node.key, node.value, left, node.right);
+    }
+    if (key > node.key) {
+      Node<V> right = remove(node.right, key);
+      return right == node.right ? node : balance(node.key, node.value, node.left, right);
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    Node<V> successor = first(node.right);
+    return balance(successor.key, successor.value, node.left, remove(node.right, successor.key));
+  }
+
+  static <V> Node<V> first(Node<V> node) {
+    if (node == null) {
+      return null;
+    }
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node;
+  }
+
+  static <V> Node<V> last(Node<V> node) {
+    if (node == null) {
+      return null;
+    }
+    while (node.right != null) {
+      node = node.right;
+    }
+    return node;
+  }
+
+  // Node with the smallest key >= key, or null
+  static <V> Node<V> ceiling(Node<V> node, int key) {
+    Node<V> best = null;
+    while (node != null) {
+      if (node.key == key) {
+        return node;
+      }
+      if (node.key > key) {
+        best = node;
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return best;
+  }
+
+  // Node with the largest key <= key, or null
+  static <V> Node<V> floor(Node<V> node, int key) {
+    Node<V> best = null;
+    while (node != null) {
+      if (node.key == key) {
+        return node;
+      }
+      if (node.key < key) {
+        best = node;
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return best;
+  }
+
+  static <V> Node<V> higher(Node<V> node, int key) {
+    return key == Integer.MAX_VALUE ? null : ceiling(node, key + 1);
+  }
+
+  static <V> Node<V> lower(Node<V> node, int key) {
+    return key == Integer.MIN_VALUE ? null : floor(node, key - 1);
+  }
+
+  // Visits keys within [from, to] in increasing order
+  static <V> boolean forEachInRange(Node<V> node, int from, int to, Visitor<? super V> visitor) {
+    while (node != null) {
+      if (node.key > from && !forEachInRange(node.left, from, to, visitor)) {
+        return false;
+      }
+      if (node.key >= from && node.key <= to && !visitor.visit(node.key, node.value)) {
+        return false;
+      }
+      if (node.key >= to) {
+        return true;
+      }
+      node = node.right;
+    }
+    return true;
+  }
+
+  private static <V> Node<V> balance(int key, V value, Node<V> left, Node<V> right) {
+    int factor = height(left) - height(right);
+    if (factor > 1) {
+      if (height(left.left) < height(left.right)) {
+        left = rotateLeft(left.key, left.value, left.left, left.right);
+      }
+      return rotateRight(key, value, left, right);
+    }
+    if (factor < -1) {
+      if (height(right.right) < height(right.left)) {
+        right = rotateRight(right.key, right.value, right.left, right.right);
+      }
+      return rotateLeft(key, value, left, right);
+    }
+    return new Node<>(key, value, left, right);
+  }
+
+  private static <V> Node<V> rotateRight(int key, V value, Node<V> left, Node<V> right) {
+    return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+  }
+
+  private static <V> Node<V> rotateLeft(int key, V value, Node<V> left, Node<V> right) {
+    return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+  }
+
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height;
+  }
+}
@@ -0,0 +1,153 @@
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Read-only SortedMap over entries that are already in strictly increasing key order, produced on demand
+ * by index. It exists to feed a TreeMap without N O(log N) insertions: new TreeMap<>(SortedMap) builds
+ * its red-black tree bottom-up in O(N), and so does putAll into an empty TreeMap with the same comparator.
+ * <p>
+ * size / iteration / firstKey / lastKey: O(1) per entry
+ * get / containsKey / subMap / headMap / tailMap: O(log N) binary search over the indexes
+ */
+class PresortedMap<K, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+
+  private final int from; // index range [from, to) of this map or view
+  private final int to;
+  private final IntFunction<K> keyAt;
+  private final IntFunction<V> valueAt;
+  private final Comparator<? super K> comparator;
+
+  PresortedMap(int size, IntFunction<K> keyAt, IntFunction<V> valueAt, Comparator<? super K> comparator) {
+    this(0, size, keyAt, valueAt, comparator);
+  }
+
+  private PresortedMap(int from, int to, IntFunction<K> keyAt, IntFunction<V> valueAt,
+      Comparator<? super K> comparator) {
+    this.from = from;
+    this.to = to;
+    this.keyAt = keyAt;
+    this.valueAt = valueAt;
+    this.comparator = comparator;
+  }
+
+  @Override
+  public int size() {
+    return to - from;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new Iterator<>() {
+          private int next = from;
+
+          @Override
+          public boolean hasNext() {
+            return next < to;
+          }
+
+          @Override
+          public Entry<K, V> next() {
+            if (next >= to) {
+              throw new NoSuchElementException();
+            }
+            int index = next++;
+            return new SimpleImmutableEntry<>(keyAt.apply(index), valueAt.apply(index));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return to - from;
+      }
+    };
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public V get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : valueAt.apply(index);
+  }
+
+  @Override
+  public Comparator<? super K> comparator() {
+    return comparator;
+  }
+
+  @Override
+  public K firstKey() {
+    if (from == to) {
+      throw new NoSuchElementException();
+    }
+    return keyAt.apply(from);
+  }
+
+  @Override
+  public K lastKey() {
+    if (from == to) {
+      throw new NoSuchElementException();
+    }
+    return keyAt.apply(to - 1);
+  }
+
+  @Override
+  public SortedMap<K, V> subMap(K fromKey, K toKey) {
+    if (compare(fromKey, toKey) > 0) {
+      throw new IllegalArgumentException("fromKey > toKey");
+    }
+    return view(lowerBound(fromKey), lowerBound(toKey));
+  }
+
+  @Override
+  public SortedMap<K, V> headMap(K toKey) {
+    return view(from, lowerBound(toKey));
+  }
+
+  @Override
+  public SortedMap<K, V> tailMap(K fromKey) {
+    return view(lowerBound(fromKey), to);
+  }
+
+  private SortedMap<K, V> view(int start, int end) {
+    return new PresortedMap<>(start, end, keyAt, valueAt, comparator);
+  }
+
+  // Index of key within [from, to), or -1
+  @SuppressWarnings("unchecked")
+  private int indexOf(Object key) {
+    try {
+      int index = lowerBound((K) key);
+      return index < to && compare(keyAt.apply(index), (K) key) == 0 ? index : -1;
+    } catch (ClassCastException e) {
+      return -1;
+    }
+  }
+
+  // First index within [from, to) whose key is >= key
+  private int lowerBound(K key) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(keyAt.apply(mid), key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(K a, K b) {
+    return comparator != null ? comparator.compare(a, b) : ((Comparable<? super K>) a).compareTo(b);
+  }
+}
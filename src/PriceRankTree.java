@@ -0,0 +1,253 @@
+/**
+ * Order-statistic set of (price, id) pairs: an AVL tree keyed on price and id packed into one long, so
+ * every item is its own node and items with the same price are ranked by id. Every node keeps, for its
+ * subtree, the number of items and the sum of their prices, so rank, range count, range sum and the k-th
+ * cheapest item follow one root-to-leaf path.
+ * <p>
+ * add / remove: O(log N)
+ * countLess / sumLess / countInRange / sumInRange / kth: O(log N)
+ * fromSorted: O(N)
+ */
+class PriceRankTree {
+
+  static class Node {
+    final long key; // price in the high 32 bits, id with its sign bit flipped in the low 32 bits
+    Node left;
+    Node right;
+    int height = 1;
+    int size = 1; // items in the subtree
+    long sum; // prices of the items in the subtree
+
+    Node(long key) {
+      this.key = key;
+      this.sum = price(key);
+    }
+  }
+
+  private Node root;
+
+  static long key(int price, int id) {
+    return ((long) price << 32) | ((id ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+  }
+
+  static int price(long key) {
+    return (int) (key >> 32);
+  }
+
+  static int id(long key) {
+    return (int) key ^ Integer.MIN_VALUE;
+  }
+
+  int size() {
+    return size(root);
+  }
+
+  long sum() {
+    return sum(root);
+  }
+
+  // Adds the item; returns false when it is already present at that price
+  boolean add(int price, int id) {
+    int before = size();
+    root = insert(root, key(price, id));
+    return size() != before;
+  }
+
+  // Removes the item; returns false when it is absent at that price
+  boolean remove(int price, int id) {
+    int before = size();
+    root = delete(root, key(price, id));
+    return size() != before;
+  }
+
+  // Number of items priced strictly below price
+  int countLess(int price) {
+    long key = key(price, Integer.MIN_VALUE);
+    int count = 0;
+    Node node = root;
+    while (node != null) {
+      if (node.key < key) {
+        count += size(node.left) + 1;
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return count;
+  }
+
+  // Sum of the prices strictly below price
+  long sumLess(int price) {
+    long key = key(price, Integer.MIN_VALUE);
+    long sum = 0;
+    Node node = root;
+    while (node != null) {
+      if (node.key < key) {
+        sum += sum(node.left) + price(node.key);
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return sum;
+  }
+
+  // Number of items priced within [from, to]
+  int countInRange(int from, int to) {
+    if (from > to) {
+      return 0;
+    }
+    return (to == Integer.MAX_VALUE ? size() : countLess(to + 1)) - countLess(from);
+  }
+
+  // Sum of the prices within [from, to]
+  long sumInRange(int from, int to) {
+    if (from > to) {
+      return 0;
+    }
+    return (to == Integer.MAX_VALUE ? sum() : sumLess(to + 1)) - sumLess(from);
+  }
+
+  // Key of the k-th cheapest item (0-based), ties broken by id
+  long kth(int k) {
+    if (k < 0 || k >= size()) {
+      throw new IllegalArgumentException("k out of range: " + k);
+    }
+    Node node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (k < leftSize) {
+        node = node.left;
+      } else if (k == leftSize) {
+        return node.key;
+      } else {
+        k -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /**
+   * Builds the tree from distinct keys in increasing order, bottom-up.
+   */
+  static PriceRankTree fromSorted(long[] keys, int length) {
+    PriceRankTree tree = new PriceRankTree();
+    tree.root = build(keys, 0, length - 1);
+    return tree;
+  }
+
+  private static Node build(long[] keys, int lo, int hi) {
+    if (lo > hi) {
+      return null;
+    }
+    int mid = (lo + hi) >>> 1;
+    Node node = new Node(keys[mid]);
+    node.left = build(keys, lo, mid - 1);
+    node.right = build(keys, mid + 1, hi);
+    update(node);
+    return node;
+  }
+
+  private Node insert(Node node, long key) {
+    if (node == null) {
+      return new Node(key);
+    }
+    if (key < node.key) {
+      node.left = insert(node.left, key);
+    } else if (key > node.key) {
+      node.right = insert(node.right, key);
+    } else {
+      return node;
+    }
+    return balance(node);
+  }
+
+  private Node delete(Node node, long key) {
+    if (node == null) {
+      return null;
+    }
+    if (key < node.key) {
+      node.left = delete(node.left, key);
+    } else if (key > node.key) {
+      node.right = delete(node.right, key);
+    } else {
+      if (node.left == null) {
+        return node.right;
+      }
+      if (node.right == null) {
+        return node.left;
+      }
+      Node successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      node.right = detachMin(node.right);
+      successor.left = node.left;
+      successor.right = node.right;
+      node = successor;
+    }
+    return balance(node);
+  }
+
+  private Node detachMin(Node node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = detachMin(node.left);
+    return balance(node);
+  }
+
+  private Node balance(Node node) {
+    update(node);
+    int factor = height(node.left) - height(node.right);
+    if (factor > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (factor < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private Node rotateRight(Node node) {
+    Node left = node.left;
+    node.left = left.right;
+    left.right = node;
+    update(node);
+    update(left);
+    return left;
+  }
+
+  private Node rotateLeft(Node node) {
+    Node right = node.right;
+    node.right = right.left;
+    right.left = node;
+    update(node);
+    update(right);
+    return right;
+  }
+
+  private static void update(Node node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    node.size = size(node.left) + 1 + size(node.right);
+    node.sum = sum(node.left) + price(node.key) + sum(node.right);
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static long sum(Node node) {
+    return node == null ? 0 : node.sum;
+  }
+}
@@ -0,0 +1,285 @@
+import java.util.*;
+
+/**
+ * Primitive-specialized engine with the same operations as StoreInventorySystem, for catalogs far beyond
+ * 10,000 items. Nothing is boxed and there is no object per item or per price:
+ * <p>
+ * itemsById: IntIntHashMap id -> price, two int arrays with open addressing.
+ * itemsByPrice: SortedLongSet of (price << 32 | id) keys in sorted blocks, so all items of one price are
+ * adjacent and ordered by id, and the price groups are ordered by price.
+ * <p>
+ * Summary of Time Complexities:
+ * O(1): getItemPrice.
+ * O(log N + BLOCK_SIZE + N / BLOCK_SIZE): addItem and removeItem, the SortedLongSet add / remove cost (a shift
+ * within one block, plus a short arraycopy of block slots when a block splits or empties).
+ * O(log N): the lowest / highest / cheaper / more expensive price lookups.
+ * O(log N + K): operations that report K items, through an allocation-free ItemVisitor.
+ * Prices are positive, so -1 means "no such price / item" like in StoreInventorySystem.
+ */
+public class PrimitiveStoreInventory {
+
+  // Receives one (id, price) pair at a time; return false to stop
+  interface ItemVisitor {
+    boolean visit(int id, int price);
+  }
+
+  private static final int MISSING = -1;
+
+  private final IntIntHashMap itemsById;
+  private final SortedLongSet itemsByPrice = new SortedLongSet();
+
+  public PrimitiveStoreInventory() {
+    this(16);
+  }
+
+  public PrimitiveStoreInventory(int expectedItems) {
+    itemsById = new IntIntHashMap(expectedItems);
+  }
+
+  public int size() {
+    return itemsById.size();
+  }
+
+  public void addItem(int id, int price) {
+    if (price <= 0) {
+      throw new IllegalArgumentException("price must be positive");
+    }
+    int previous = itemsById.put(id, price, MISSING);
+    if (previous == price) {
+      return;
+    }
+    if (previous != MISSING) {
+      itemsByPrice.remove(key(previous, id));
+    }
+    itemsByPrice.add(key(price, id));
+  }
+
+  // Returns the removed item's price, or -1
+  public int removeItem(int id) {
+    int price = itemsById.remove(id, MISSING);
+    if (price != MISSING) {
+      itemsByPrice.remove(key(price, id));
+    }
+    return price;
+  }
+
+  public int getItemPrice(int id) {
+    return itemsById.get(id, MISSING);
+  }
+
+  public int getLeastExpensivePrice() {
+    long first = itemsByPrice.first();
+    return first == SortedLongSet.NONE ? MISSING : price(first);
+  }
+
+  public int getMostExpensivePrice() {
+    long last = itemsByPrice.last();
+    return last == SortedLongSet.NONE ? MISSING : price(last);
+  }
+
+  // Visits the cheapest items and returns their price, or -1 when empty
+  public int getLeastExpensiveItems(ItemVisitor visitor) {
+    return forEachItemAtPrice(getLeastExpensivePrice(), visitor);
+  }
+
+  public int getMostExpensiveItems(ItemVisitor visitor) {
+    return forEachItemAtPrice(getMostExpensivePrice(), visitor);
+  }
+
+  // Visits the items priced within [start, end], by price then id
+  public void getItemsInPriceRange(int start, int end, ItemVisitor visitor) {
+    if (start > end) {
+      return;
+    }
+    itemsByPrice.forEachInRange(firstKey(start), lastKey(end),
+        (value) -> visitor.visit(id(value), price(value)));
+  }
+
+  // Highest price strictly cheaper than the item's price, or -1
+  public int getPriceJustCheaperThan(int id) {
+    int price = itemsById.get(id, MISSING);
+    if (price == MISSING) {
+      return MISSING;
+    }
+    long lower = itemsByPrice.lower(firstKey(price));
+    return lower == SortedLongSet.NONE ? MISSING : price(lower);
+  }
+
+  // Lowest price strictly more expensive than the item's price, or -1
+  public int getNextHigherPrice(int id) {
+    int price = itemsById.get(id, MISSING);
+    if (price == MISSING) {
+      return MISSING;
+    }
+    long higher = itemsByPrice.higher(lastKey(price));
+    return higher == SortedLongSet.NONE ? MISSING : price(higher);
+  }
+
+  // Visits the items at the highest price strictly cheaper than the item's price; returns that price or -1
+  public int getItemJustCheaperThan(int id, ItemVisitor visitor) {
+    return forEachItemAtPrice(getPriceJustCheaperThan(id), visitor);
+  }
+
+  // Visits the items at the lowest price strictly more expensive than the item's price; returns that price or -1
+  public int getItemJustMoreExpensiveThan(int id, ItemVisitor visitor) {
+    return forEachItemAtPrice(getNextHigherPrice(id), visitor);
+  }
+
+  public void getAllItemsCheaperThan(int id, ItemVisitor visitor) {
+    int price = itemsById.get(id, MISSING);
+    if (price != MISSING && price > 1) {
+      getItemsInPriceRange(1, price - 1, visitor);
+    }
+  }
+
+  public void getAllItemsMoreExpensiveThan(int id, ItemVisitor visitor) {
+    int price = itemsById.get(id, MISSING);
+    if (price != MISSING && price < Integer.MAX_VALUE) {
+      getItemsInPriceRange(price + 1, Integer.MAX_VALUE, visitor);
+    }
+  }
+
+  private int forEachItemAtPrice(int price, ItemVisitor visitor) {
+    if (price != MISSING) {
+      getItemsInPriceRange(price, price, visitor);
+    }
+    return price;
+  }
+
+  // Price in the high half, id (as unsigned) in the low half: ordered by price, then id
+  private static long key(int price, int id) {
+    return ((long) price << 32) | (id & 0xFFFFFFFFL);
+  }
+
+  // Smallest and largest key of a price group
+  private static long firstKey(int price) {
+    return (long) price << 32;
+  }
+
+  private static long lastKey(int price) {
+    return ((long) price << 32) | 0xFFFFFFFFL;
+  }
+
+  private static int price(long key) {
+    return (int) (key >>> 32);
+  }
+
+  private static int id(long key) {
+    return (int) key;
+  }
+
+  /**
+   * Heap footprint and latency of StoreInventorySystem against this engine for the same catalog.
+   * Run with a large heap, e.g. java -Xms3g -Xmx3g PrimitiveStoreInventory
+   */
+  public static void main(String[] args) {
+    PrimitiveStoreInventory store = new PrimitiveStoreInventory();
+    store.addItem(1, 100);
+    store.addItem(2, 200);
+    store.addItem(3, 150);
+    store.addItem(4, 50);
+    System.out.println("Price of item 2: " + store.getItemPrice(2)); // 200
+    System.out.println("Removing item 3 from the inventory... " + store.removeItem(3)); // 150
+    StringBuilder items = new StringBuilder();
+    store.getItemsInPriceRange(100, 200, (id, price) -> {
+      items.append("[Id: ").append(id).append(" price: ").append(price).append("]");
+      return true;
+    });
+    System.out.println("Items with prices between 100 and 200: " + items); // 1, 2
+    System.out.println("Most expensive price: " + store.getMostExpensivePrice()); // 200
+    System.out.println("Least expensive price: " + store.getLeastExpensivePrice()); // 50
+    System.out.println("Price just cheaper than item 2: " + store.getPriceJustCheaperThan(2)); // 100
+    System.out.println("Next higher price after item 1: " + store.getNextHigherPrice(1)); // 200
+
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    SplittableRandom random = new SplittableRandom(42);
+    int[] prices = new int[n];
+    for (int i = 0; i < n; i++) {
+      prices[i] = 1 + random.nextInt(n / 2); // about two items per price
+    }
+
+    long before = usedHeap();
+    long startNanos = System.nanoTime();
+    StoreInventorySystem boxed = new StoreInventorySystem();
+    for (int id = 0; id < n; id++) {
+      boxed.addItem(id, prices[id]);
+    }
+    double boxedAdd = (System.nanoTime() - startNanos) / (double) n;
+    long boxedBytes = usedHeap() - before;
+
+    before = usedHeap();
+    startNanos = System.nanoTime();
+    PrimitiveStoreInventory primitive = new PrimitiveStoreInventory();
+    for (int id = 0; id < n; id++) {
+      primitive.addItem(id, prices[id]);
+    }
+    double primitiveAdd = (System.nanoTime() - startNanos) / (double) n;
+    long primitiveBytes = usedHeap() - before;
+
+    System.out.printf("Bytes per item: StoreInventorySystem %.1f, primitive %.1f%n",
+        (double) boxedBytes / n, (double) primitiveBytes / n);
+    System.out.printf("addItem ns/op: StoreInventorySystem %.0f, primitive %.0f%n", boxedAdd, primitiveAdd);
+
+    int queries = 1_000_000;
+    long checksum = 0;
+    startNanos = System.nanoTime();
+    for (int q = 0; q < queries; q++) {
+      checksum += boxed.getNextHigherPrice(random.nextInt(n));
+      checksum += boxed.getItemJustCheaperThan(random.nextInt(n)).size();
+    }
+    double boxedLookup = (System.nanoTime() - startNanos) / (2.0 * queries);
+
+    startNanos = System.nanoTime();
+    long[] visited = new long[1];
+    ItemVisitor counter = (id, price) -> {
+      visited[0]++;
+      return true;
+    };
+    for (int q = 0; q < queries; q++) {
+      checksum += primitive.getNextHigherPrice(random.nextInt(n));
+      primitive.getItemJustCheaperThan(random.nextInt(n), counter);
+    }
+    double primitiveLookup = (System.nanoTime() - startNanos) / (2.0 * queries);
+    System.out.printf("Neighbour price lookup ns/op: StoreInventorySystem %.0f, primitive %.0f%n",
+        boxedLookup, primitiveLookup);
+
+    int ranges = 100_000;
+    startNanos = System.nanoTime();
+    for (int q = 0; q < ranges; q++) {
+      int low = 1 + random.nextInt(n / 2);
+      for (Set<StoreInventorySystem.Item> group : boxed.getItemsInPriceRange(low, low + 100).values()) {
+        checksum += group.size();
+      }
+    }
+    double boxedRange = (System.nanoTime() - startNanos) / (double) ranges;
+
+    startNanos = System.nanoTime();
+    for (int q = 0; q < ranges; q++) {
+      int low = 1 + random.nextInt(n / 2);
+      primitive.getItemsInPriceRange(low, low + 100, counter);
+    }
+    double primitiveRange = (System.nanoTime() - startNanos) / (double) ranges;
+    System.out.printf("Range of 100 prices ns/op: StoreInventorySystem %.0f, primitive %.0f (checksum %d)%n",
+        boxedRange, primitiveRange, checksum + visited[0]);
+
+    startNanos = System.nanoTime();
+    for (int id = 0; id < n; id += 2) {
+      boxed.removeItem(id);
+    }
+    double boxedRemove = (System.nanoTime() - startNanos) / (n / 2.0);
+    startNanos = System.nanoTime();
+    for (int id = 0; id < n; id += 2) {
+      primitive.removeItem(id);
+    }
+    double primitiveRemove = (System.nanoTime() - startNanos) / (n / 2.0);
+    System.out.printf("removeItem ns/op: StoreInventorySystem %.0f, primitive %.0f%n", boxedRemove, primitiveRemove);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
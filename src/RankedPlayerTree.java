@@ -0,0 +1,196 @@
+import java.util.*;
+
+/**
+ * Players in leaderboard order: an AVL tree ordered by score descending, then name ascending, where every
+ * node keeps the size of its subtree. Any position can be reached from the root in O(log N) and from there
+ * the following players are an in-order walk, so a page never walks from the top.
+ * <p>
+ * add / remove / positionOf: O(log N)
+ * page(offset, limit): O(log N + limit)
+ * <p>
+ * The order reads Player.score, so a player must be removed before its score changes and added back after.
+ */
+class RankedPlayerTree {
+
+  static final Comparator<LeaderBoardSystem.Player> ORDER = (a, b) ->
+      a.score != b.score ? Integer.compare(b.score, a.score) : a.name.compareTo(b.name);
+
+  static class Node {
+    final LeaderBoardSystem.Player player;
+    Node left;
+    Node right;
+    int height = 1;
+    int size = 1;
+
+    Node(LeaderBoardSystem.Player player) {
+      this.player = player;
+    }
+  }
+
+  private Node root;
+
+  int size() {
+    return size(root);
+  }
+
+  void add(LeaderBoardSystem.Player player) {
+    root = insert(root, player);
+  }
+
+  void remove(LeaderBoardSystem.Player player) {
+    root = delete(root, player);
+  }
+
+  // 0-based position of the player in leaderboard order, or -1 when absent
+  int positionOf(LeaderBoardSystem.Player player) {
+    int position = 0;
+    Node node = root;
+    while (node != null) {
+      int cmp = ORDER.compare(player, node.player);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        position += size(node.left) + 1;
+        node = node.right;
+      } else {
+        return position + size(node.left);
+      }
+    }
+    return -1;
+  }
+
+  // Up to limit players starting at the 0-based position offset
+  List<LeaderBoardSystem.Player> page(int offset, int limit) {
+    if (offset < 0 || limit < 0) {
+      throw new IllegalArgumentException("offset and limit must not be negative");
+    }
+    List<LeaderBoardSystem.Player> page = new ArrayList<>(Math.min(limit, Math.max(0, size() - offset)));
+    if (offset >= size() || limit == 0) {
+      return page;
+    }
+    // the path to position offset; nodes where it turned left are the ones that follow it, nearest on top
+    Deque<Node> stack = new ArrayDeque<>();
+    Node node = root;
+    int k = offset;
+    while (true) {
+      int leftSize = size(node.left);
+      if (k < leftSize) {
+        stack.push(node);
+        node = node.left;
+      } else if (k == leftSize) {
+        stack.push(node);
+        break;
+      } else {
+        k -= leftSize + 1;
+        node = node.right;
+      }
+    }
+    while (page.size() < limit && !stack.isEmpty()) {
+      node = stack.pop();
+      page.add(node.player);
+      for (Node next = node.right; next != null; next = next.left) {
+        stack.push(next);
+      }
+    }
+    return page;
+  }
+
+  private Node insert(Node node, LeaderBoardSystem.Player player) {
+    if (node == null) {
+      return new Node(player);
+    }
+    int cmp = ORDER.compare(player, node.player);
+    if (cmp < 0) {
+      node.left = insert(node.left, player);
+    } else if (cmp > 0) {
+      node.right = insert(node.right, player);
+    } else {
+      return node;
+    }
+    return balance(node);
+  }
+
+  private Node delete(Node node, LeaderBoardSystem.Player player) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = ORDER.compare(player, node.player);
+    if (cmp < 0) {
+      node.left = delete(node.left, player);
+    } else if (cmp > 0) {
+      node.right = delete(node.right, player);
+    } else {
+      if (node.left == null) {
+        return node.right;
+      }
+      if (node.right == null) {
+        return node.left;
+      }
+      Node successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      successor.right = detachMin(node.right);
+      successor.left = node.left;
+      node = successor;
+    }
+    return balance(node);
+  }
+
+  private Node detachMin(Node node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = detachMin(node.left);
+    return balance(node);
+  }
+
+  private Node balance(Node node) {
+    update(node);
+    int factor = height(node.left) - height(node.right);
+    if (factor > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (factor < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private Node rotateRight(Node node) {
+    Node left = node.left;
+    node.left = left.right;
+    left.right = node;
+    update(node);
+    update(left);
+    return left;
+  }
+
+  private Node rotateLeft(Node node) {
+    Node right = node.right;
+    node.right = right.left;
+    right.left = node;
+    update(node);
+    update(right);
+    return right;
+  }
+
+  private static void update(Node node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    node.size = size(node.left) + 1 + size(node.right);
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+}
@@ -0,0 +1,196 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * One booking engine for many resources. Resources are partitioned across shards by id, and every shard
+ * is owned by a single worker thread that keeps one BookingSystem per resource. A resource's bookings
+ * are only ever touched by its shard's thread, so there are no locks around booking state; the only
+ * synchronization is handing work to the shard's queue.
+ * <p>
+ * A batch is split per shard and each shard receives one task for its part, so a batch costs one
+ * queue hand-off per shard rather than one per request. Every request gets its own future.
+ */
+public class ShardedBookingService implements AutoCloseable {
+
+  enum Operation {
+    CAN_BOOK,
+    ADD_BOOKING // books when there is no overlap, the result tells whether it was booked
+  }
+
+  static class BookingRequest {
+    final int resourceId;
+    final Operation operation;
+    final int start;
+    final int end;
+
+    BookingRequest(int resourceId, Operation operation, int start, int end) {
+      this.resourceId = resourceId;
+      this.operation = operation;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  private static class Shard {
+    final ExecutorService worker;
+    final Map<Integer, BookingSystem> resources = new HashMap<>(); // confined to the worker thread
+
+    Shard(int index) {
+      worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "booking-shard-" + index);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    boolean apply(BookingRequest request) {
+      BookingSystem system = resources.computeIfAbsent(request.resourceId, (id) -> new BookingSystem());
+      boolean free = system.canBook(request.start, request.end);
+      if (free && request.operation == Operation.ADD_BOOKING) {
+        system.addBooking(request.start, request.end);
+      }
+      return free;
+    }
+  }
+
+  private final Shard[] shards;
+  private volatile boolean closed;
+
+  public ShardedBookingService(int shardCount) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("shardCount must be positive");
+    }
+    shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(i);
+    }
+  }
+
+  public CompletableFuture<Boolean> canBook(int resourceId, int start, int end) {
+    return submit(List.of(new BookingRequest(resourceId, Operation.CAN_BOOK, start, end))).get(0);
+  }
+
+  public CompletableFuture<Boolean> addBooking(int resourceId, int start, int end) {
+    return submit(List.of(new BookingRequest(resourceId, Operation.ADD_BOOKING, start, end))).get(0);
+  }
+
+  /**
+   * Routes a batch to the owning shards. Requests for the same resource are applied in batch order.
+   * After close() the whole batch is rejected up front; if close() races with the routing, the requests
+   * of every shard that no longer accepts work complete exceptionally with RejectedExecutionException.
+   *
+   * @param batch - requests in any mix of resources and operations; the list may be reused once this returns
+   * @return - one future per request, in batch order
+   */
+  public List<CompletableFuture<Boolean>> submit(List<BookingRequest> batch) {
+    if (closed) {
+      throw new RejectedExecutionException("booking service is closed");
+    }
+    List<CompletableFuture<Boolean>> futures = new ArrayList<>(batch.size());
+    int[] counts = new int[shards.length];
+    int[] shardOf = new int[batch.size()];
+    int index = 0;
+    for (BookingRequest request : batch) {
+      futures.add(new CompletableFuture<>());
+      shardOf[index] = Math.floorMod(request.resourceId, shards.length);
+      counts[shardOf[index++]]++;
+    }
+    // requests are copied here, so workers never read the caller's list after submit returns
+    int[][] perShard = new int[shards.length][];
+    BookingRequest[][] requestsPerShard = new BookingRequest[shards.length][];
+    for (int s = 0; s < shards.length; s++) {
+      perShard[s] = new int[counts[s]];
+      requestsPerShard[s] = new BookingRequest[counts[s]];
+      counts[s] = 0;
+    }
+    index = 0;
+    for (BookingRequest request : batch) {
+      int s = shardOf[index];
+      perShard[s][counts[s]] = index++;
+      requestsPerShard[s][counts[s]++] = request;
+    }
+
+    for (int s = 0; s < shards.length; s++) {
+      int[] indexes = perShard[s];
+      BookingRequest[] requests = requestsPerShard[s];
+      if (indexes.length == 0) {
+        continue;
+      }
+      Shard shard = shards[s];
+      try {
+        shard.worker.execute(() -> {
+          for (int i = 0; i < indexes.length; i++) {
+            try {
+              futures.get(indexes[i]).complete(shard.apply(requests[i]));
+            } catch (RuntimeException e) {
+              futures.get(indexes[i]).completeExceptionally(e);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        for (int rejected : indexes) {
+          futures.get(rejected).completeExceptionally(e);
+        }
+      }
+    }
+    return futures;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (Shard shard : shards) {
+      shard.worker.shutdown();
+    }
+  }
+
+  /**
+   * Throughput benchmark: the same batched request stream against 1, 2, 4 and 8 shards.
+   */
+  public static void main(String[] args) throws Exception {
+    try (ShardedBookingService service = new ShardedBookingService(4)) {
+      System.out.println(service.addBooking(7, 10, 12).get()); // true
+      System.out.println(service.addBooking(7, 11, 14).get()); // false, overlaps 10-12 in room 7
+      System.out.println(service.addBooking(8, 11, 14).get()); // true, room 8 is free
+      System.out.println(service.canBook(7, 12, 13).get()); // true
+    }
+
+    int requests = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+    System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+    run(1, requests / 4); // warm up the JIT before measuring
+    for (int shardCount = 1; shardCount <= 8; shardCount *= 2) {
+      double seconds = run(shardCount, requests);
+      System.out.printf("shards %d: %.0f requests/s%n", shardCount, requests / seconds);
+    }
+  }
+
+  // Sends requests in batches of 1000 over 200k resources, at most 64 batches in flight; returns seconds
+  private static double run(int shardCount, int requests) throws Exception {
+    int resources = 200_000;
+    int batchSize = 1_000;
+    try (ShardedBookingService service = new ShardedBookingService(shardCount)) {
+      SplittableRandom random = new SplittableRandom(42);
+      long startNanos = System.nanoTime();
+      List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+      for (int sent = 0; sent < requests; sent += batchSize) {
+        List<BookingRequest> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+          int start = random.nextInt(100_000);
+          Operation operation = random.nextInt(4) == 0 ? Operation.CAN_BOOK : Operation.ADD_BOOKING;
+          batch.add(new BookingRequest(random.nextInt(resources), operation, start, start + 1 + random.nextInt(60)));
+        }
+        pending.addAll(service.submit(batch));
+        if (pending.size() >= 64 * batchSize) {
+          for (CompletableFuture<Boolean> future : pending) {
+            future.get();
+          }
+          pending.clear();
+        }
+      }
+      for (CompletableFuture<Boolean> future : pending) {
+        future.get();
+      }
+      return (System.nanoTime() - startNanos) / 1e9;
+    }
+  }
+}
@@ -54,16 +54,16 @@ public class SimpleStockPriceManager {
    */
   TreeMap<Integer, Integer> priceByTs = new TreeMap<>();
 
-  private int getNearestEarlierStockPrice(int ts) {
+  int getNearestEarlierStockPrice(int ts) {
     var price = priceByTs.floorEntry(ts);
     return price == null ? -1 : price.getValue();
   }
 
-  private Integer getStockPriceAt(int ts) {
+  Integer getStockPriceAt(int ts) {
     return priceByTs.get(ts);
   }
 
-  private void addStockPrice(int ts, int price) {
+  void addStockPrice(int ts, int price) {
     priceByTs.put(ts, price);
   }
 
@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * Ordered set of primitive longs kept in sorted blocks of up to BLOCK_SIZE values (a one-level B+tree:
+ * the first value of every block is kept in a separate array that is binary-searched to find the block).
+ * Blocks are split when full and dropped when empty, so every block stays dense.
+ * <p>
+ * add / remove: O(log N + BLOCK_SIZE + N / BLOCK_SIZE), the last term being a short arraycopy of block slots
+ * ceiling / floor / higher / lower: O(log N)
+ * Iteration from a value: O(log N + K)
+ */
+class SortedLongSet {
+
+  static final long NONE = Long.MIN_VALUE; // returned when there is no such value; never stored
+
+  // Callback for range iteration; return false to stop
+  interface LongVisitor {
+    boolean visit(long value);
+  }
+
+  private static final int BLOCK_SIZE = 256;
+
+  private long[][] blocks = new long[4][];
+  private int[] blockSizes = new int[4];
+  private long[] firstValues = new long[4];
+  private int blockCount;
+  private int size;
+
+  int size() {
+    return size;
+  }
+
+  boolean add(long value) {
+    if (value == NONE) {
+      throw new IllegalArgumentException("Long.MIN_VALUE is reserved");
+    }
+    if (blockCount == 0) {
+      insertBlock(0, new long[BLOCK_SIZE], 0);
+    }
+    int block = blockFor(value);
+    long[] values = blocks[block];
+    int count = blockSizes[block];
+    int pos = Arrays.binarySearch(values, 0, count, value);
+    if (pos >= 0) {
+      return false;
+    }
+    pos = -pos - 1;
+    if (count == BLOCK_SIZE) {
+      // split in half and insert into the half that covers the value
+      int half = BLOCK_SIZE / 2;
+      long[] upper = new long[BLOCK_SIZE];
+      System.arraycopy(values, half, upper, 0, BLOCK_SIZE - half);
+      blockSizes[block] = half;
+      insertBlock(block + 1, upper, BLOCK_SIZE - half);
+      if (pos > half) {
+        block++;
+        pos -= half;
+      }
+      values = blocks[block];
+      count = blockSizes[block];
+    }
+    System.arraycopy(values, pos, values, pos + 1, count - pos);
+    values[pos] = value;
+    blockSizes[block] = count + 1;
+    firstValues[block] = values[0];
+    size++;
+    return true;
+  }
+
+  boolean remove(long value) {
+    if (blockCount == 0) {
+      return false;
+    }
+    int block = blockFor(value);
+    long[] values = blocks[block];
+    int count = blockSizes[block];
+    int pos = Arrays.binarySearch(values, 0, count, value);
+    if (pos < 0) {
+      return false;
+    }
+    System.arraycopy(values, pos + 1, values, pos, count - pos - 1);
+    blockSizes[block] = --count;
+    size--;
+    if (count == 0) {
+      removeBlock(block);
+    } else {
+      firstValues[block] = values[0];
+    }
+    return true;
+  }
+
+  boolean contains(long value) {
+    if (blockCount == 0) {
+      return false;
+    }
+    int block = blockFor(value);
+    return Arrays.binarySearch(blocks[block], 0, blockSizes[block], value) >= 0;
+  }
+
+  long first() {
+    return size == 0 ? NONE : blocks[0][0];
+  }
+
+  long last() {
+    return size == 0 ? NONE : blocks[blockCount - 1][blockSizes[blockCount - 1] - 1];
+  }
+
+  // Smallest value >= key, or NONE
+  long ceiling(long key) {
+    if (size == 0) {
+      return NONE;
+    }
+    int block = blockFor(key);
+    int pos = lowerBound(blocks[block], blockSizes[block], key);
+    if (pos < blockSizes[block]) {
+      return blocks[block][pos];
+    }
+    return block + 1 < blockCount ? blocks[block + 1][0] : NONE;
+  }
+
+  // Largest value <= key, or NONE
+  long floor(long key) {
+    if (size == 0 || key < firstValues[0]) {
+      return NONE;
+    }
+    int block = blockFor(key);
+    int pos = lowerBound(blocks[block], blockSizes[block], key);
+    if (pos < blockSizes[block] && blocks[block][pos] == key) {
+      return key;
+    }
+    return blocks[block][pos - 1]; // key >= the block's first value, so pos > 0
+  }
+
+  long higher(long key) {
+    return key == Long.MAX_VALUE ? NONE : ceiling(key + 1);
+  }
+
+  long lower(long key) {
+    return key == NONE + 1 ? NONE : floor(key - 1);
+  }
+
+  // Visits values in [from, to] in increasing order until the visitor returns false
+  void forEachInRange(long from, long to, LongVisitor visitor) {
+    if (size == 0 || from > to) {
+      return;
+    }
+    int block = blockFor(from);
+    int pos = lowerBound(blocks[block], blockSizes[block], from);
+    for (; block < blockCount; block++, pos = 0) {
+      long[] values = blocks[block];
+      int count = blockSizes[block];
+      for (; pos < count; pos++) {
+        if (values[pos] > to || !visitor.visit(values[pos])) {
+          return;
+        }
+      }
+    }
+  }
+
+  // Last block whose first value is <= value, or block 0
+  private int blockFor(long value) {
+    int lo = 0;
+    int hi = blockCount - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (firstValues[mid] <= value) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  private static int lowerBound(long[] values, int count, long key) {
+    int lo = 0;
+    int hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (values[mid] < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private void insertBlock(int index, long[] values, int count) {
+    if (blockCount == blocks.length) {
+      int capacity = blockCount * 2;
+      blocks = Arrays.copyOf(blocks, capacity);
+      blockSizes = Arrays.copyOf(blockSizes, capacity);
+      firstValues = Arrays.copyOf(firstValues, capacity);
+    }
+    System.arraycopy(blocks, index, blocks, index + 1, blockCount - index);
+    System.arraycopy(blockSizes, index, blockSizes, index + 1, blockCount - index);
+    System.arraycopy(firstValues, index, firstValues, index + 1, blockCount - index);
+    blocks[index] = values;
+    blockSizes[index] = count;
+    firstValues[index] = count == 0 ? 0 : values[0];
+    blockCount++;
+  }
+
+  private void removeBlock(int index) {
+    System.arraycopy(blocks, index + 1, blocks, index, blockCount - index - 1);
+    System.arraycopy(blockSizes, index + 1, blockSizes, index, blockCount - index - 1);
+    System.arraycopy(firstValues, index + 1, firstValues, index, blockCount - index - 1);
+    blocks[--blockCount] = null;
+  }
+}
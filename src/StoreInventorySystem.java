@@ -61,7 +61,9 @@ public class StoreInventorySystem {
   }
 
   private final TreeMap<Integer, Set<Item>> itemsByPrice = new TreeMap<>();
-  private final Map<Integer, Item> itemsById = new HashMap<>();
+  private Map<Integer, Item> itemsById = new HashMap<>();
+  private PriceRankTree priceStats = new PriceRankTree(); // every item as (price, id), for aggregates and ranks
+  private InventoryChangeFeed changeFeed; // created by the first subscribe
 
   /**
    * firstEntry() on a TreeMap takes O(log N) time, where N is the number of distinct prices (keys) in the TreeMap.
@@ -92,7 +94,7 @@ public class StoreInventorySystem {
    * @param end
    * @return
    */
-  private Map<Integer, Set<Item>> getItemsInPriceRange(int start, int end) {
+  Map<Integer, Set<Item>> getItemsInPriceRange(int start, int end) {
     return itemsByPrice.subMap(start, true, end, true);
   }
 
@@ -106,7 +108,7 @@ public class StoreInventorySystem {
    * @param id
    * @return
    */
-  private Set<Item> getItemJustCheaperThan(int id) {
+  Set<Item> getItemJustCheaperThan(int id) {
     if (!itemsById.containsKey(id)) {
       return Set.of();
     }
@@ -141,7 +143,7 @@ public class StoreInventorySystem {
    * @param id
    * @return
    */
-  private Integer getNextHigherPrice(int id) {
+  Integer getNextHigherPrice(int id) {
     if (!itemsById.containsKey(id)) {
       return -1;
     }
@@ -196,12 +198,22 @@ public class StoreInventorySystem {
    * @param id
    * @return
    */
-  private Item removeItem(int id) {
+  Item removeItem(int id) {
+    Item item = detach(id);
+    if (item != null) {
+      publish(id, item.price, -1);
+    }
+    return item;
+  }
+
+  // Takes the item out of both indexes without notifying subscribers
+  private Item detach(int id) {
     if (!itemsById.containsKey(id)) {
       return null;
     }
     Item item = itemsById.remove(id); // O(1)
     itemsByPrice.get(item.price).remove(item); // O(1) HashSet - find the item
+    priceStats.remove(item.price, item.id); // O(log n)
     if (itemsByPrice.get(item.price).isEmpty()) {
       itemsByPrice.remove(item.price); // O(log n) remove the item from TreeMap
     }
@@ -215,7 +227,7 @@ public class StoreInventorySystem {
    * @param id
    * @return
    */
-  private int getItemPrice(int id) {
+  int getItemPrice(int id) {
     Item item = itemsById.get(id);
     return item == null ? -1 : item.price;
   }
@@ -231,19 +243,407 @@ public class StoreInventorySystem {
    * @param price
    */
 
-  private void addItem(int id, int price) {
+  void addItem(int id, int price) {
+    int oldPrice = place(id, price);
+    publish(id, oldPrice, price);
+  }
+
+  // Puts the item at price without notifying subscribers; returns its previous price, -1 for a new item
+  private int place(int id, int price) {
     Item item = itemsById.get(id); // O(1) get the item by the id
+    int oldPrice = -1;
     if (item != null && item.price == price) {
-      return;
+      return price;
     } else if (item != null) { // price isn't same as current item
-      removeItem(id); // O(log n) remove from the treeMap
+      oldPrice = item.price;
+      detach(id); // O(log n) remove from the treeMap
       item.price = price;
     } else {
       item = new Item(id, price);
     }
 
     itemsByPrice.computeIfAbsent(price, (val) -> new HashSet<>()).add(item); // add to treeMap log n and add to set O(1)
+    priceStats.add(price, id); // O(log n)
     itemsById.put(id, item); // O(1) add to hash map
+    return oldPrice;
+  }
+
+  /**
+   * Replaces the whole inventory with the given catalog; for duplicate ids the last price wins.
+   * Items are created and indexed by id in one pass, sorted by price once (primitive sort of packed
+   * price/index keys), and the TreeMap is built bottom-up from the sorted price groups, which TreeMap
+   * does in O(N) when given a SortedMap.
+   * Overall, the complexity is O(N log N) for the sort and O(N) for everything else.
+   *
+   * @param ids
+   * @param prices
+   */
+  void loadCatalog(int[] ids, int[] prices) {
+    checkSameLength(ids, prices);
+    boolean notify = hasSubscribers();
+    Map<Integer, Item> previous = itemsById;
+    itemsById = new HashMap<>(Math.max(16, (int) (ids.length / 0.75f) + 1)); // sized once, never rehashed
+    itemsByPrice.clear();
+    Item[] items = new Item[ids.length];
+    int count = 0;
+    for (int i = 0; i < ids.length; i++) {
+      Item item = itemsById.get(ids[i]);
+      if (item == null) {
+        item = new Item(ids[i], prices[i]);
+        itemsById.put(ids[i], item);
+        items[count++] = item;
+      } else {
+        item.price = prices[i]; // last write wins
+      }
+    }
+    buildPriceIndex(sortByPrice(items, count));
+    if (notify) {
+      int changes = previous.size() + count;
+      int[] changedIds = new int[changes];
+      int[] oldPrices = new int[changes];
+      int[] newPrices = new int[changes];
+      int changed = 0;
+      for (Item old : previous.values()) {
+        Item item = itemsById.get(old.id);
+        changedIds[changed] = old.id;
+        oldPrices[changed] = old.price;
+        newPrices[changed++] = item == null ? -1 : item.price;
+      }
+      for (int i = 0; i < count; i++) {
+        if (!previous.containsKey(items[i].id)) {
+          changedIds[changed] = items[i].id;
+          oldPrices[changed] = -1;
+          newPrices[changed++] = items[i].price;
+        }
+      }
+      changeFeed.publishAll(changedIds, oldPrices, newPrices, changed);
+    }
+  }
+
+  /**
+   * Applies a batch of price changes (new ids are added); for duplicate ids the last price wins.
+   * Small batches go through addItem. Larger ones are sorted once and merged into the price index
+   * in a single ordered pass: moved items leave their old group as the pass reaches it, changed items
+   * join or create their new group in price order, and the TreeMap is rebuilt bottom-up.
+   * Overall, the complexity is O(N + B log B) instead of O(B log N) with much larger constants.
+   *
+   * @param ids
+   * @param prices
+   */
+  void applyPriceChanges(int[] ids, int[] prices) {
+    checkSameLength(ids, prices);
+    if ((long) ids.length * 16 < itemsById.size()) {
+      int[] oldPrices = hasSubscribers() ? new int[ids.length] : null;
+      for (int i = 0; i < ids.length; i++) {
+        int oldPrice = place(ids[i], prices[i]);
+        if (oldPrices != null) {
+          oldPrices[i] = oldPrice;
+        }
+      }
+      if (oldPrices != null) {
+        changeFeed.publishAll(ids, oldPrices, prices, ids.length);
+      }
+      return;
+    }
+
+    // price each changed item had before the batch, null for items the batch creates
+    Map<Item, Integer> oldPrices = new IdentityHashMap<>();
+    Item[] changed = new Item[ids.length];
+    int changedCount = 0;
+    List<Item> moved = new ArrayList<>();
+    for (int i = 0; i < ids.length; i++) {
+      Item item = itemsById.get(ids[i]);
+      if (item == null) {
+        item = new Item(ids[i], prices[i]);
+        itemsById.put(ids[i], item);
+        oldPrices.put(item, null);
+        changed[changedCount++] = item;
+      } else if (!oldPrices.containsKey(item)) {
+        oldPrices.put(item, item.price);
+        moved.add(item);
+        changed[changedCount++] = item;
+      }
+      item.price = prices[i];
+    }
+
+    // items leaving their old group, ordered by old price
+    long[] departures = new long[moved.size()];
+    for (int i = 0; i < departures.length; i++) {
+      departures[i] = ((long) oldPrices.get(moved.get(i)) << 32) | i;
+    }
+    Arrays.sort(departures);
+    Item[] arrivals = sortByPrice(changed, changedCount);
+
+    List<Integer> groupPrices = new ArrayList<>();
+    List<Set<Item>> groups = new ArrayList<>();
+    int departure = 0;
+    int arrival = 0;
+    for (Map.Entry<Integer, Set<Item>> group : itemsByPrice.entrySet()) {
+      int price = group.getKey();
+      Set<Item> items = group.getValue();
+      while (departure < departures.length && (int) (departures[departure] >> 32) == price) {
+        items.remove(moved.get((int) departures[departure++]));
+      }
+      arrival = addGroups(arrivals, arrival, price, groupPrices, groups); // new prices below this one
+      while (arrival < arrivals.length && arrivals[arrival].price == price) {
+        items.add(arrivals[arrival++]);
+      }
+      if (!items.isEmpty()) {
+        groupPrices.add(price);
+        groups.add(items);
+      }
+    }
+    addGroups(arrivals, arrival, Integer.MAX_VALUE + 1L, groupPrices, groups); // prices above every group
+    setPriceIndex(groupPrices, groups);
+    if (hasSubscribers()) {
+      int[] changedIds = new int[changedCount];
+      int[] before = new int[changedCount];
+      int[] after = new int[changedCount];
+      for (int i = 0; i < changedCount; i++) {
+        Integer oldPrice = oldPrices.get(changed[i]);
+        changedIds[i] = changed[i].id;
+        before[i] = oldPrice == null ? -1 : oldPrice;
+        after[i] = changed[i].price;
+      }
+      changeFeed.publishAll(changedIds, before, after, changedCount);
+    }
+  }
+
+  /**
+   * Registers a price range [low, high] and returns its subscription: from now on every addItem, removeItem,
+   * loadCatalog and applyPriceChanges that moves an item into, out of or within the range queues one event
+   * for it; loadCatalog and applyPriceChanges enqueue all of a subscriber's events from the batch at once.
+   * Matching is an interval-tree stabbing query: O(log S + M) per change for S subscriptions.
+   *
+   * @param low
+   * @param high
+   * @param capacity events buffered for this subscriber before the inventory waits for it
+   * @return the subscription; close it to stop
+   */
+  InventoryChangeFeed.Subscription subscribe(int low, int high, int capacity) {
+    if (changeFeed == null) {
+      changeFeed = new InventoryChangeFeed();
+    }
+    return changeFeed.subscribe(low, high, capacity);
+  }
+
+  private boolean hasSubscribers() {
+    return changeFeed != null && changeFeed.hasSubscribers();
+  }
+
+  private void publish(int id, int oldPrice, int newPrice) {
+    if (changeFeed != null) {
+      changeFeed.publish(id, oldPrice, newPrice);
+    }
+  }
+
+  // Sorts the first count items by price without boxing: price in the high bits, index in the low bits
+  private static Item[] sortByPrice(Item[] items, int count) {
+    long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = ((long) items[i].price << 32) | i;
+    }
+    Arrays.sort(keys);
+    Item[] sorted = new Item[count];
+    for (int i = 0; i < count; i++) {
+      sorted[i] = items[(int) keys[i]];
+    }
+    return sorted;
+  }
+
+  // Appends a new group for every run of sorted items priced below limit; returns the first item left
+  private static int addGroups(Item[] sorted, int from, long limit, List<Integer> groupPrices, List<Set<Item>> groups) {
+    while (from < sorted.length && sorted[from].price < limit) {
+      int price = sorted[from].price;
+      Set<Item> items = new HashSet<>();
+      while (from < sorted.length && sorted[from].price == price) {
+        items.add(sorted[from++]);
+      }
+      groupPrices.add(price);
+      groups.add(items);
+    }
+    return from;
+  }
+
+  // Builds itemsByPrice bottom-up from items already sorted by price: O(N)
+  private void buildPriceIndex(Item[] sorted) {
+    List<Integer> groupPrices = new ArrayList<>();
+    List<Set<Item>> groups = new ArrayList<>();
+    addGroups(sorted, 0, Integer.MAX_VALUE + 1L, groupPrices, groups);
+    setPriceIndex(groupPrices, groups);
+  }
+
+  // Replaces itemsByPrice and priceStats with the given groups, already in price order: O(N) plus sorting
+  // the ids within each group
+  private void setPriceIndex(List<Integer> groupPrices, List<Set<Item>> groups) {
+    int total = 0;
+    for (Set<Item> group : groups) {
+      total += group.size();
+    }
+    long[] keys = new long[total];
+    int count = 0;
+    for (int i = 0; i < groups.size(); i++) {
+      int from = count;
+      for (Item item : groups.get(i)) {
+        keys[count++] = PriceRankTree.key(item.price, item.id);
+      }
+      Arrays.sort(keys, from, count); // by id within the group
+    }
+    // refilled in place rather than rebuilt with new TreeMap<>(SortedMap), since callers may hold live
+    // range views of itemsByPrice; putAll into the emptied map takes the same O(N) bottom-up path
+    itemsByPrice.clear();
+    itemsByPrice.putAll(new PresortedMap<>(groupPrices.size(), groupPrices::get, groups::get, null));
+    priceStats = PriceRankTree.fromSorted(keys, count);
+  }
+
+  /**
+   * Counts come from the order-statistic index over all prices, not from the price groups:
+   * two rank lookups of O(log N) each, whatever the number of items in the range.
+   *
+   * @param start
+   * @param end
+   * @return number of items priced within [start, end]
+   */
+  int countInRange(int start, int end) {
+    return priceStats.countInRange(start, end);
+  }
+
+  /**
+   * Two prefix-sum lookups in the order-statistic index: O(log N).
+   *
+   * @param start
+   * @param end
+   * @return sum of the prices of the items priced within [start, end]
+   */
+  long sumInRange(int start, int end) {
+    return priceStats.sumInRange(start, end);
+  }
+
+  /**
+   * countInRange and sumInRange: O(log N).
+   *
+   * @param start
+   * @param end
+   * @return average price of the items priced within [start, end], or -1 when there are none
+   */
+  double averagePriceInRange(int start, int end) {
+    int count = priceStats.countInRange(start, end);
+    return count == 0 ? -1 : (double) priceStats.sumInRange(start, end) / count;
+  }
+
+  /**
+   * Items are ranked by price, and by id among items with the same price. The order-statistic index is
+   * keyed on (price, id), so kth(k) lands on the item itself: O(log N).
+   *
+   * @param k 0-based rank, 0 being the cheapest item
+   * @return the k-th cheapest item, or null when k is out of range
+   */
+  Item kthCheapest(int k) {
+    if (k < 0 || k >= priceStats.size()) {
+      return null;
+    }
+    return itemsById.get(PriceRankTree.id(priceStats.kth(k)));
+  }
+
+  /**
+   * Nearest-rank percentile: the price of the ceil(p / 100 * N)-th cheapest item. O(log N).
+   *
+   * @param percentile between 0 and 100
+   * @return the price at that percentile, or -1 when the inventory is empty
+   */
+  int percentilePrice(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    int size = priceStats.size();
+    if (size == 0) {
+      return -1;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * size);
+    return PriceRankTree.price(priceStats.kth(Math.max(rank, 1) - 1));
+  }
+
+  /**
+   * Middle price, or the mean of the two middle prices for an even number of items. O(log N).
+   *
+   * @return the median price, or -1 when the inventory is empty
+   */
+  double medianPrice() {
+    int size = priceStats.size();
+    if (size == 0) {
+      return -1;
+    }
+    return (PriceRankTree.price(priceStats.kth((size - 1) / 2)) + (double) PriceRankTree.price(priceStats.kth(size / 2))) / 2;
+  }
+
+  // Random adds, removes, reprices and bulk batches, every aggregate compared with a brute-force scan
+  private static void checkAggregatesAgainstOracle() {
+    Random random = new Random(7);
+    StoreInventorySystem store = new StoreInventorySystem();
+    Map<Integer, Integer> oracle = new HashMap<>();
+    for (int op = 0; op < 20_000; op++) {
+      int id = random.nextInt(500);
+      int action = random.nextInt(100);
+      if (action < 45) {
+        int price = 1 + random.nextInt(200);
+        store.addItem(id, price);
+        oracle.put(id, price);
+      } else if (action < 75) {
+        store.removeItem(id);
+        oracle.remove(id);
+      } else if (action < 77) {
+        int[] ids = new int[random.nextInt(300)];
+        int[] prices = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = random.nextInt(500);
+          prices[i] = 1 + random.nextInt(200);
+          oracle.put(ids[i], prices[i]);
+        }
+        store.applyPriceChanges(ids, prices);
+      } else if (action < 78) {
+        int[] ids = new int[random.nextInt(400)];
+        int[] prices = new int[ids.length];
+        oracle.clear();
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = random.nextInt(500);
+          prices[i] = 1 + random.nextInt(200);
+          oracle.put(ids[i], prices[i]);
+        }
+        store.loadCatalog(ids, prices);
+      } else {
+        int start = random.nextInt(210);
+        int end = start + random.nextInt(60) - 5;
+        long count = oracle.values().stream().filter((p) -> p >= start && p <= end).count();
+        long sum = oracle.values().stream().filter((p) -> p >= start && p <= end).mapToLong(Integer::longValue).sum();
+        if (store.countInRange(start, end) != count || store.sumInRange(start, end) != sum) {
+          throw new AssertionError("range aggregate mismatch for [" + start + ", " + end + "]");
+        }
+        List<long[]> ranked = new ArrayList<>();
+        oracle.forEach((itemId, price) -> ranked.add(new long[]{price, itemId}));
+        ranked.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        int k = random.nextInt(ranked.size() + 1);
+        Item kth = store.kthCheapest(k);
+        if (k == ranked.size() ? kth != null : kth == null || kth.id != ranked.get(k)[1] || kth.price != ranked.get(k)[0]) {
+          throw new AssertionError("kthCheapest(" + k + ") mismatch");
+        }
+        if (!ranked.isEmpty()) {
+          int size = ranked.size();
+          double median = (ranked.get((size - 1) / 2)[0] + ranked.get(size / 2)[0]) / 2.0;
+          int percentile = random.nextInt(101);
+          int rank = Math.max(1, (int) Math.ceil(percentile / 100.0 * size));
+          if (store.medianPrice() != median || store.percentilePrice(percentile) != ranked.get(rank - 1)[0]) {
+            throw new AssertionError("median / percentile mismatch");
+          }
+        }
+      }
+    }
+    System.out.println("Aggregates matched a brute-force oracle over 20000 random operations");
+  }
+
+  private static void checkSameLength(int[] ids, int[] prices) {
+    if (ids.length != prices.length) {
+      throw new IllegalArgumentException("ids and prices must have the same length");
+    }
   }
 
   public static void main(String[] args) {
@@ -295,6 +695,62 @@ public class StoreInventorySystem {
     System.out.println("Fetching all items more expensive than ...");
     System.out.println("Items more expensive than : " + store.getAllItemsMoreExpensiveThan(4));  // Output: [2]
 
+// Bulk load a catalog and apply a batch of price changes
+    store.loadCatalog(new int[]{10, 11, 12, 10}, new int[]{300, 100, 200, 250});
+    System.out.println("Loaded catalog: " + store.getItemsInPriceRange(0, 1000));  // Output: 11, 12, 10 at 250
+    store.applyPriceChanges(new int[]{11, 13}, new int[]{400, 100});
+    System.out.println("After price changes: " + store.getItemsInPriceRange(0, 1000));  // Output: 13, 12, 10, 11
+
+// Aggregates over a price range and order statistics
+    System.out.println("Items priced 100..300: " + store.countInRange(100, 300) + ", sum " + store.sumInRange(100, 300)
+        + ", average " + store.averagePriceInRange(100, 300));  // Output: 3, sum 550, average 183.33
+    System.out.println("Second cheapest item: " + store.kthCheapest(1));  // Output: Item ID: 12, Price: 200
+    System.out.println("Median price: " + store.medianPrice() + ", 90th percentile: " + store.percentilePrice(90));  // Output: 225.0, 400
+    checkAggregatesAgainstOracle();
+
+// Nightly refresh of a large catalog: one addItem per row against the bulk paths
+    int n = 1_000_000;
+    Random random = new Random(42);
+    int[] ids = new int[n];
+    int[] prices = new int[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = i;
+      prices[i] = 1 + random.nextInt(n);
+    }
+    long startNanos = System.nanoTime();
+    StoreInventorySystem replayed = new StoreInventorySystem();
+    for (int i = 0; i < n; i++) {
+      replayed.addItem(ids[i], prices[i]);
+    }
+    System.out.printf("addItem loop: %d ms%n", (System.nanoTime() - startNanos) / 1_000_000);
+    startNanos = System.nanoTime();
+    StoreInventorySystem bulk = new StoreInventorySystem();
+    bulk.loadCatalog(ids, prices);
+    System.out.printf("loadCatalog: %d ms%n", (System.nanoTime() - startNanos) / 1_000_000);
+
+    for (int i = 0; i < n / 4; i++) {
+      ids[i] = random.nextInt(n);
+      prices[i] = 1 + random.nextInt(n);
+    }
+    int[] changedIds = Arrays.copyOf(ids, n / 4);
+    int[] changedPrices = Arrays.copyOf(prices, n / 4);
+    startNanos = System.nanoTime();
+    for (int i = 0; i < changedIds.length; i++) {
+      replayed.addItem(changedIds[i], changedPrices[i]);
+    }
+    System.out.printf("%d price changes one by one: %d ms%n", changedIds.length, (System.nanoTime() - startNanos) / 1_000_000);
+    startNanos = System.nanoTime();
+    bulk.applyPriceChanges(changedIds, changedPrices);
+    System.out.printf("%d price changes as a batch: %d ms%n", changedIds.length, (System.nanoTime() - startNanos) / 1_000_000);
+    startNanos = System.nanoTime();
+    long checksum = 0;
+    for (int q = 0; q < 1_000_000; q++) {
+      int low = 1 + random.nextInt(n);
+      checksum += bulk.countInRange(low, low + n / 10) + bulk.sumInRange(low, low + n / 10);
+    }
+    System.out.printf("countInRange + sumInRange over 10%% of the prices: %d ns/op (checksum %d)%n",
+        (System.nanoTime() - startNanos) / 1_000_000, checksum);
+
   }
 
 
@@ -18,6 +18,8 @@ public class StudentGradingSystem {
 
   TreeMap<Integer, Set<Student>> studentsByGrade = new TreeMap<>();
   Map<String, Student> studentsByName = new HashMap<>();
+  private GradeStatistics statistics; // null until enableStatistics
+  private final GradeStatistics.View statisticsView = new GradeStatistics.View(this::requireStatistics);
 
   private Collection<Set<Student>> getStudentsInGradeRange(int g1, int g2) {
 
@@ -36,12 +38,15 @@ public class StudentGradingSystem {
     return students == null ? Set.of() : students.getValue();
   }
 
-  private int getGrade(String name) {
+  int getGrade(String name) {
     Student student = studentsByName.get(name);
     return student == null ? -1 : student.grade;
   }
 
-  private void addStudent(String name, int grade) {
+  void addStudent(String name, int grade) {
+    if (statistics != null && !statistics.inDomain(grade)) {
+      throw new IllegalArgumentException("grade " + grade + " outside the statistics domain");
+    }
     Student student = studentsByName.get(name);
     if (student == null) {
       student = new Student(name, grade);
@@ -53,14 +58,20 @@ public class StudentGradingSystem {
     }
     studentsByName.put(name, student);
     studentsByGrade.computeIfAbsent(grade, (g) -> new HashSet<>()).add(student);
+    if (statistics != null) {
+      statistics.add(grade);
+    }
 
   }
 
-  private Student removeStudent(String name) {
+  Student removeStudent(String name) {
     if (!studentsByName.containsKey(name)) {
       return null;
     }
     Student student = studentsByName.remove(name);
+    if (statistics != null) {
+      statistics.remove(student.grade);
+    }
     studentsByGrade.get(student.grade).remove(student);
     if (studentsByGrade.get(student.grade).isEmpty()) {
       studentsByGrade.remove(student.grade);
@@ -68,6 +79,46 @@ public class StudentGradingSystem {
     return student;
   }
 
+  /**
+   * Starts maintaining grade statistics over [minGrade, maxGrade]; from then on every addStudent and
+   * removeStudent updates them in O(log G), and grades outside the domain are rejected.
+   * Returns a read-only view; only this system updates the statistics.
+   */
+  GradeStatistics.View enableStatistics(int minGrade, int maxGrade) {
+    GradeStatistics enabled = new GradeStatistics(minGrade, maxGrade);
+    for (Map.Entry<Integer, Set<Student>> group : studentsByGrade.entrySet()) {
+      for (int i = 0; i < group.getValue().size(); i++) {
+        enabled.add(group.getKey()); // throws for a grade outside the domain, before anything changes
+      }
+    }
+    statistics = enabled;
+    return statisticsView;
+  }
+
+  // Read-only view of the statistics, or null when they are not enabled
+  GradeStatistics.View statistics() {
+    return statistics == null ? null : statisticsView;
+  }
+
+  // 1 + the number of students with a higher grade, or -1 for an unknown student
+  int getClassRank(String name) {
+    Student student = studentsByName.get(name);
+    return student == null ? -1 : requireStatistics().rank(student.grade);
+  }
+
+  // Share of the class graded at or below the student, in percent, or -1 for an unknown student
+  double getClassPercentile(String name) {
+    Student student = studentsByName.get(name);
+    return student == null ? -1 : requireStatistics().percentileOf(student.grade);
+  }
+
+  private GradeStatistics requireStatistics() {
+    if (statistics == null) {
+      throw new IllegalStateException("statistics are not enabled");
+    }
+    return statistics;
+  }
+
   public static void main(String[] args) {
     StudentGradingSystem studentGrades = new StudentGradingSystem();
     studentGrades.addStudent("Alice", 95);
@@ -80,6 +131,68 @@ public class StudentGradingSystem {
     System.out.println("Lowest student: " + studentGrades.getLowestStudent());
 
     System.out.println("Students with grades between 80 and 95: " + studentGrades.getStudentsInGradeRange(80, 95));
+
+    GradeStatistics.View statistics = studentGrades.enableStatistics(0, 100);
+    studentGrades.addStudent("Erin", 88);
+    System.out.println("Dave's class rank: " + studentGrades.getClassRank("Dave")); // 3 (tied with Erin)
+    System.out.println("Dave's class percentile: " + studentGrades.getClassPercentile("Dave")); // 60.0
+    System.out.println("Students at or above 88: " + statistics.countAtOrAbove(88)); // 4
+    System.out.println("Median grade: " + statistics.gradeAtPercentile(50)); // 88
+    System.out.println("Histogram by 10: " + Arrays.toString(statistics.histogram(10)));
+
+    checkStatisticsAgainstScan();
+  }
+
+  // Random adds, regrades and removals; every statistic compared with a scan of studentsByGrade
+  private static void checkStatisticsAgainstScan() {
+    Random random = new Random(11);
+    StudentGradingSystem system = new StudentGradingSystem();
+    GradeStatistics.View statistics = system.enableStatistics(0, 100);
+    for (int op = 0; op < 50_000; op++) {
+      String name = "s" + random.nextInt(2_000);
+      if (random.nextInt(4) == 0) {
+        system.removeStudent(name);
+      } else {
+        system.addStudent(name, random.nextInt(101));
+      }
+      if (op % 50 != 0) {
+        continue;
+      }
+      int grade = random.nextInt(103) - 1;
+      int below = 0;
+      int at = 0;
+      int[] histogram = new int[11];
+      List<Integer> sorted = new ArrayList<>();
+      for (Map.Entry<Integer, Set<Student>> group : system.studentsByGrade.entrySet()) {
+        int count = group.getValue().size();
+        below += group.getKey() < grade ? count : 0;
+        at += group.getKey() == grade ? count : 0;
+        histogram[group.getKey() / 10] += count;
+        for (int i = 0; i < count; i++) {
+          sorted.add(group.getKey());
+        }
+      }
+      int size = system.studentsByName.size();
+      int percentile = random.nextInt(101);
+      int expectedAtPercentile = size == 0 ? -1 : sorted.get(Math.max(1, (int) Math.ceil(percentile / 100.0 * size)) - 1);
+      if (statistics.countBelow(grade) != below || statistics.countAt(grade) != at
+          || statistics.rank(grade) != size - below - at + 1
+          || statistics.countAtOrAbove(grade) != size - below
+          || statistics.gradeAtPercentile(percentile) != expectedAtPercentile
+          || !Arrays.equals(statistics.histogram(10), histogram)) {
+        throw new AssertionError("statistics differ from a scan after " + op + " operations");
+      }
+    }
+    System.out.println("Statistics matched a scan of studentsByGrade over 50000 operations");
+
+    long startNanos = System.nanoTime();
+    long checksum = 0;
+    for (int i = 0; i < 1_000_000; i++) {
+      int grade = random.nextInt(101);
+      checksum += statistics.rank(grade) + statistics.countAtOrAbove(grade) + statistics.gradeAtPercentile(grade);
+    }
+    System.out.printf("rank + countAtOrAbove + gradeAtPercentile: %d ns/op (checksum %d)%n",
+        (System.nanoTime() - startNanos) / 1_000_000, checksum);
   }
 
 }
@@ -0,0 +1,293 @@
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * All-time leaderboard plus sliding time windows (hourly, daily, weekly, ...), each a LeaderBoardSystem kept
+ * up to date incrementally instead of being rebuilt from raw events.
+ * <p>
+ * A window of bucketCount buckets of bucketMillis each keeps, per bucket, the points every player scored in
+ * it (coalesced: name -> summed points). A new point goes into its bucket and straight into the window's
+ * board. When the clock moves past a bucket, the bucket expires: every player's points in it are
+ * subtracted from the board, and a player who has no points left in any live bucket is removed, so the
+ * window board holds exactly the players active in the window. Buckets live in a ring indexed by
+ * (time / bucketMillis) % bucketCount.
+ * <p>
+ * Each point is added once and subtracted once per window, so updates stay O(log N) amortized and top-N,
+ * pages and ranks on a window cost exactly what they cost on LeaderBoardSystem. A window is accurate to one
+ * bucket: it covers the current, partly elapsed bucket plus the bucketCount - 1 before it.
+ */
+public class TimeWindowedLeaderBoard {
+
+  private static final class Bucket {
+    long index = Long.MIN_VALUE; // time / bucketMillis of the points held, MIN_VALUE when unused
+    final HashMap<String, Integer> points = new HashMap<>();
+  }
+
+  private static final class Window {
+    final long bucketMillis;
+    final Bucket[] ring;
+    final LeaderBoardSystem board = new LeaderBoardSystem();
+    // player -> live buckets holding its points, oldest first unless late events arrived out of order
+    final HashMap<String, ArrayDeque<Bucket>> liveBuckets = new HashMap<>();
+    long newest = Long.MIN_VALUE; // index of the newest bucket seen
+
+    Window(long bucketMillis, int bucketCount) {
+      this.bucketMillis = bucketMillis;
+      this.ring = new Bucket[bucketCount];
+      for (int i = 0; i < bucketCount; i++) {
+        ring[i] = new Bucket();
+      }
+    }
+
+    void advance(long now) {
+      long index = Math.floorDiv(now, bucketMillis);
+      if (index <= newest) {
+        return;
+      }
+      // every bucket at or below index - ring.length has left the window; at most one pass over the ring
+      long from = newest == Long.MIN_VALUE ? index : Math.max(newest + 1, index - ring.length + 1);
+      for (long i = from; i <= index; i++) {
+        Bucket bucket = ring[(int) Math.floorMod(i, (long) ring.length)];
+        if (bucket.index != Long.MIN_VALUE && bucket.index != i) {
+          expire(bucket);
+        }
+      }
+      newest = index;
+    }
+
+    void addPoints(String name, int points, long time) {
+      long index = Math.floorDiv(time, bucketMillis);
+      if (index <= newest - ring.length) {
+        return; // older than the window
+      }
+      Bucket bucket = ring[(int) Math.floorMod(index, (long) ring.length)];
+      if (bucket.index != index) {
+        if (bucket.index != Long.MIN_VALUE) {
+          expire(bucket);
+        }
+        bucket.index = index;
+      }
+      if (!bucket.points.containsKey(name)) {
+        // first points of this player in this bucket
+        liveBuckets.computeIfAbsent(name, (player) -> new ArrayDeque<>(2)).add(bucket);
+      }
+      bucket.points.merge(name, points, Integer::sum);
+      board.addPoints(name, points);
+    }
+
+    // O(k log N) for the k buckets holding the player's points, not a pass over the ring
+    void removePlayer(String name) {
+      ArrayDeque<Bucket> buckets = liveBuckets.remove(name);
+      if (buckets == null) {
+        return;
+      }
+      for (Bucket bucket : buckets) {
+        bucket.points.remove(name);
+      }
+      board.removePlayer(name);
+    }
+
+    private void expire(Bucket bucket) {
+      bucket.points.forEach((name, points) -> {
+        ArrayDeque<Bucket> buckets = liveBuckets.get(name);
+        buckets.removeFirstOccurrence(bucket); // the oldest, so normally the first
+        if (buckets.isEmpty()) {
+          liveBuckets.remove(name);
+          board.removePlayer(name);
+        } else {
+          board.addPoints(name, -points);
+        }
+      });
+      bucket.points.clear();
+      bucket.index = Long.MIN_VALUE;
+    }
+  }
+
+  private final LeaderBoardSystem allTime = new LeaderBoardSystem();
+  private final Map<String, Window> windows = new LinkedHashMap<>();
+  private final LongSupplier clock;
+
+  public TimeWindowedLeaderBoard() {
+    this(System::currentTimeMillis);
+  }
+
+  public TimeWindowedLeaderBoard(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  // The usual windows: last hour by minute, last day by 15 minutes, last week by hour
+  public static TimeWindowedLeaderBoard withStandardWindows(LongSupplier clock) {
+    TimeWindowedLeaderBoard board = new TimeWindowedLeaderBoard(clock);
+    board.addWindow("hourly", 60_000, 60);
+    board.addWindow("daily", 15 * 60_000, 96);
+    board.addWindow("weekly", 60 * 60_000, 168);
+    return board;
+  }
+
+  /**
+   * Adds a window of bucketCount buckets of bucketMillis each. Only points scored from now on count in it.
+   */
+  public void addWindow(String name, long bucketMillis, int bucketCount) {
+    if (bucketMillis <= 0 || bucketCount <= 0) {
+      throw new IllegalArgumentException("bucketMillis and bucketCount must be positive");
+    }
+    if (windows.containsKey(name)) {
+      throw new IllegalArgumentException("window already exists: " + name);
+    }
+    Window window = new Window(bucketMillis, bucketCount);
+    window.advance(clock.getAsLong());
+    windows.put(name, window);
+  }
+
+  // Points scored now
+  public void addPoints(String name, int points) {
+    addPoints(name, points, clock.getAsLong());
+  }
+
+  /**
+   * Points scored at the given time, which may be a little in the past (late events): they count in every
+   * window that still covers that time. A time ahead of the clock (a producer whose clock runs fast) is
+   * clamped to now, so the points count in every window as well as in the all-time board.
+   */
+  public void addPoints(String name, int points, long time) {
+    long now = clock.getAsLong();
+    long at = Math.min(time, now);
+    allTime.addPoints(name, points);
+    for (Window window : windows.values()) {
+      window.advance(now);
+      window.addPoints(name, points, at);
+    }
+  }
+
+  public void removePlayer(String name) {
+    allTime.removePlayer(name);
+    for (Window window : windows.values()) {
+      window.removePlayer(name);
+    }
+  }
+
+  public LeaderBoardSystem allTime() {
+    return allTime;
+  }
+
+  /**
+   * The window's board, with expired buckets subtracted up to the current time. Use it for getTopPlayers,
+   * getPage, getPlayersAround, getRank and getPlayerRank.
+   */
+  public LeaderBoardSystem window(String name) {
+    Window window = windows.get(name);
+    if (window == null) {
+      throw new IllegalArgumentException("no such window: " + name);
+    }
+    window.advance(clock.getAsLong());
+    return window.board;
+  }
+
+  /**
+   * Demo, a randomized check against window scores recomputed from the raw event log, and the cost of
+   * incremental windows against rebuilding them from the log.
+   */
+  public static void main(String[] args) {
+    long[] now = {0};
+    TimeWindowedLeaderBoard board = withStandardWindows(() -> now[0]);
+    board.addPoints("Alice", 100);
+    now[0] += 30 * 60_000;
+    board.addPoints("Bob", 70);
+    now[0] += 45 * 60_000; // Alice's points are now 75 minutes old
+    board.addPoints("Bob", 10);
+    System.out.println("Hourly: " + board.window("hourly").getTopPlayers(10)); // [Bob 80]
+    System.out.println("Daily: " + board.window("daily").getTopPlayers(10)); // [Alice 100, Bob 80]
+    System.out.println("All time rank of Bob: " + board.allTime().getPlayerRank("Bob")); // 2
+
+    checkAgainstEventLog();
+
+    int events = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int players = 100_000;
+    Random random = new Random(42);
+    now[0] = 0;
+    TimeWindowedLeaderBoard incremental = withStandardWindows(() -> now[0]);
+    String[] names = new String[players];
+    for (int i = 0; i < players; i++) {
+      names[i] = "player-" + i;
+    }
+    long step = 14L * 24 * 60 * 60_000 / events; // two weeks of events
+    long[] times = new long[events];
+    int[] who = new int[events];
+    int[] points = new int[events];
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < events; i++) {
+      now[0] += step;
+      times[i] = now[0];
+      who[i] = random.nextInt(players);
+      points[i] = 1 + random.nextInt(100);
+      incremental.addPoints(names[who[i]], points[i]);
+    }
+    double perEvent = (System.nanoTime() - startNanos) / (double) events;
+    System.out.printf("Incremental all-time + hourly + daily + weekly: %.0f ns per event%n", perEvent);
+
+    // what a scheduled rebuild of the weekly board costs, once
+    startNanos = System.nanoTime();
+    LeaderBoardSystem rebuilt = new LeaderBoardSystem();
+    long weekAgo = now[0] - 7L * 24 * 60 * 60_000;
+    for (int i = 0; i < events; i++) {
+      if (times[i] > weekAgo) {
+        rebuilt.addPoints(names[who[i]], points[i]);
+      }
+    }
+    System.out.printf("One rebuild of the weekly board from the log: %d ms (%d players)%n",
+        (System.nanoTime() - startNanos) / 1_000_000, rebuilt.players.size());
+    startNanos = System.nanoTime();
+    long checksum = 0;
+    for (int i = 0; i < 100_000; i++) {
+      checksum += incremental.window("weekly").getPlayerRank(names[random.nextInt(players)]);
+      checksum += incremental.window("hourly").getTopPlayers(10).size();
+    }
+    System.out.printf("Weekly rank + hourly top-10: %d ns/op (checksum %d)%n",
+        (System.nanoTime() - startNanos) / 100_000, checksum);
+  }
+
+  // Random events with late and future-dated arrivals and removals; every window compared with a recount of the log
+  private static void checkAgainstEventLog() {
+    long[] now = {1_000_000};
+    TimeWindowedLeaderBoard board = new TimeWindowedLeaderBoard(() -> now[0]);
+    board.addWindow("short", 1_000, 5);
+    board.addWindow("long", 7_000, 10);
+    Map<String, long[]> spans = Map.of("short", new long[]{1_000, 5}, "long", new long[]{7_000, 10});
+    List<Object[]> log = new ArrayList<>(); // name, points, time
+    Random random = new Random(7);
+    for (int op = 0; op < 20_000; op++) {
+      now[0] += random.nextInt(400);
+      String name = "p" + random.nextInt(40);
+      if (random.nextInt(50) == 0) {
+        board.removePlayer(name);
+        log.removeIf((event) -> event[0].equals(name));
+        continue;
+      }
+      int points = random.nextInt(100) - 20;
+      int skew = random.nextInt(20);
+      long time = now[0] + (skew == 0 ? random.nextInt(3_000) : skew < 3 ? -random.nextInt(8_000) : 0);
+      board.addPoints(name, points, time);
+      log.add(new Object[]{name, points, Math.min(time, now[0])}); // future times count as now
+      if (op % 100 != 0) {
+        continue;
+      }
+      for (Map.Entry<String, long[]> span : spans.entrySet()) {
+        long bucketMillis = span.getValue()[0];
+        long oldest = (Math.floorDiv(now[0], bucketMillis) - span.getValue()[1] + 1) * bucketMillis;
+        Map<String, Integer> expected = new TreeMap<>();
+        for (Object[] event : log) {
+          if ((long) event[2] >= oldest) {
+            expected.merge((String) event[0], (Integer) event[1], Integer::sum);
+          }
+        }
+        LeaderBoardSystem window = board.window(span.getKey());
+        Map<String, Integer> actual = new TreeMap<>();
+        window.players.forEach((player, entry) -> actual.put(player, entry.score));
+        if (!actual.equals(expected)) {
+          throw new AssertionError(span.getKey() + " window differs from the event log at " + now[0]);
+        }
+      }
+    }
+    System.out.println("Windows matched a recount of the event log over 20000 events");
+  }
+}